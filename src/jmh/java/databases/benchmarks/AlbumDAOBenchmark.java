@@ -0,0 +1,112 @@
+package databases.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+
+/**
+ * Measures the read and write methods of AlbumDAO. Run with
+ * {@code ./gradlew jmh}.
+ *
+ * The writes change the database, so every measurement iteration runs on a
+ * fresh copy of the dataset: each iteration starts from the same data, and the
+ * rows added or changed by one iteration do not affect the next.
+ *
+ * deleteAlbum() needs a new row for every call, or all calls after the first
+ * few hundred would delete nothing. {@link InsertedAlbum} adds one before
+ * each call, outside of the measured time. Setup code per invocation costs
+ * some timer overhead, which is small next to the commit of a delete.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlbumDAOBenchmark {
+
+    @Param({ "chinook", "synthetic" })
+    public String dataset;
+
+    @Param({ "direct", "pooled" })
+    public String connections;
+
+    private ConnectionProvider provider;
+    private AlbumDAO albumDAO;
+    private long maxArtistId;
+    private long maxAlbumId;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        String url = BenchmarkDatabase.prepare(dataset);
+        maxArtistId = BenchmarkDatabase.maxArtistId(url);
+        maxAlbumId = BenchmarkDatabase.maxAlbumId(url);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws Exception {
+        provider = BenchmarkDatabase.connections(BenchmarkDatabase.prepareWritable(dataset), connections);
+        albumDAO = new AlbumDAO(provider);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        BenchmarkDatabase.release(provider);
+    }
+
+    private Artist randomArtist() {
+        return new Artist(ThreadLocalRandom.current().nextLong(1, maxArtistId + 1), "");
+    }
+
+    @Benchmark
+    public List<Album> getAlbumsByArtist() {
+        return albumDAO.getAlbumsByArtist(randomArtist());
+    }
+
+    @Benchmark
+    public boolean addAlbum() {
+        return albumDAO.addAlbum(new Album("Benchmark album", randomArtist().getId()));
+    }
+
+    @Benchmark
+    public boolean updateAlbum() {
+        long albumId = ThreadLocalRandom.current().nextLong(1, maxAlbumId + 1);
+        return albumDAO.updateAlbum(new Album(albumId, "Benchmark title", randomArtist().getId()));
+    }
+
+    @Benchmark
+    public boolean deleteAlbum(InsertedAlbum inserted) {
+        return albumDAO.deleteAlbum(inserted.album);
+    }
+
+    /**
+     * An album added to the database before each call of deleteAlbum(). This is
+     * a separate state, so that the other benchmarks do not add albums too.
+     */
+    @State(Scope.Thread)
+    public static class InsertedAlbum {
+
+        private Album album;
+
+        @Setup(Level.Invocation)
+        public void insert(AlbumDAOBenchmark benchmark) {
+            album = new Album("Benchmark album", benchmark.randomArtist().getId());
+            if (!benchmark.albumDAO.addAlbum(album)) {
+                throw new IllegalStateException("Could not add the album to delete");
+            }
+        }
+    }
+}
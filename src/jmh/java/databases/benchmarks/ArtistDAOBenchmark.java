@@ -0,0 +1,61 @@
+package databases.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+
+/**
+ * Measures the read methods of ArtistDAO. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArtistDAOBenchmark {
+
+    @Param({ "chinook", "synthetic" })
+    public String dataset;
+
+    @Param({ "direct", "pooled" })
+    public String connections;
+
+    private ConnectionProvider provider;
+    private ArtistDAO artistDAO;
+    private long maxArtistId;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.prepare(dataset);
+        maxArtistId = BenchmarkDatabase.maxArtistId(url);
+        provider = BenchmarkDatabase.connections(url, connections);
+        artistDAO = new ArtistDAO(provider);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.release(provider);
+    }
+
+    @Benchmark
+    public List<Artist> getArtists() {
+        return artistDAO.getArtists();
+    }
+
+    @Benchmark
+    public Artist getArtistById() {
+        return artistDAO.getArtistById(ThreadLocalRandom.current().nextLong(1, maxArtistId + 1));
+    }
+}
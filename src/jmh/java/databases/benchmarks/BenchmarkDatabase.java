@@ -0,0 +1,194 @@
+package databases.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import databases.connection.ConnectionPool;
+import databases.connection.ConnectionProvider;
+
+/**
+ * Prepares the databases used by the benchmarks. The benchmarks never touch
+ * the files in the data directory directly, they work on copies under
+ * build/jmh-data.
+ *
+ * Two datasets are available:
+ *
+ * - "chinook" is a fresh copy of data/Chinook_Sqlite.sqlite (275 artists, 347
+ * albums)
+ *
+ * - "synthetic" is generated with {@link #SYNTHETIC_ARTISTS} artists and
+ * {@link #SYNTHETIC_ALBUMS_PER_ARTIST} albums per artist. Generating it takes a
+ * while, so the file is kept and reused by later runs.
+ */
+public class BenchmarkDatabase {
+
+    public static final int SYNTHETIC_ARTISTS = 1_000_000;
+    public static final int SYNTHETIC_ALBUMS_PER_ARTIST = 10;
+
+    private static final Path CHINOOK = Path.of("data", "Chinook_Sqlite.sqlite");
+    private static final Path DATA_DIR = Path.of("build", "jmh-data");
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Returns the JDBC URL of a benchmark copy of the given dataset.
+     *
+     * @param dataset "chinook" or "synthetic".
+     */
+    public static String prepare(String dataset) throws IOException, SQLException {
+        return "jdbc:sqlite:" + prepareFile(dataset);
+    }
+
+    /**
+     * Returns the JDBC URL of a throwaway copy of the given dataset, for
+     * benchmarks that write. Every call replaces the previous copy, so a
+     * benchmark that calls this before each iteration measures every iteration
+     * on the same data, and the kept synthetic file is never changed.
+     *
+     * @param dataset "chinook" or "synthetic".
+     */
+    public static String prepareWritable(String dataset) throws IOException, SQLException {
+        Path copy = DATA_DIR.resolve(dataset + "-writable.sqlite");
+        Files.copy(prepareFile(dataset), copy, StandardCopyOption.REPLACE_EXISTING);
+        return "jdbc:sqlite:" + copy;
+    }
+
+    private static Path prepareFile(String dataset) throws IOException, SQLException {
+        Files.createDirectories(DATA_DIR);
+
+        return switch (dataset) {
+            case "chinook" -> {
+                Path copy = DATA_DIR.resolve("Chinook_Sqlite_BENCHMARK.sqlite");
+                Files.copy(CHINOOK, copy, StandardCopyOption.REPLACE_EXISTING);
+                yield copy;
+            }
+            case "synthetic" -> {
+                Path file = DATA_DIR.resolve("synthetic-" + SYNTHETIC_ARTISTS + "x" + SYNTHETIC_ALBUMS_PER_ARTIST
+                        + ".sqlite");
+                if (!Files.exists(file)) {
+                    generateSynthetic(file);
+                }
+                yield file;
+            }
+            default -> throw new IllegalArgumentException("Unknown dataset: " + dataset);
+        };
+    }
+
+    /**
+     * Returns the highest ArtistId of the database, used for picking random ids.
+     */
+    public static long maxArtistId(String connectionString) throws SQLException {
+        return queryLong(connectionString, "SELECT MAX(ArtistId) FROM Artist");
+    }
+
+    /**
+     * Returns the highest AlbumId of the database. The ids of both datasets have
+     * no gaps, so every id up to this one exists.
+     */
+    public static long maxAlbumId(String connectionString) throws SQLException {
+        return queryLong(connectionString, "SELECT MAX(AlbumId) FROM Album");
+    }
+
+    private static long queryLong(String connectionString, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(connectionString);
+                Statement statement = connection.createStatement();
+                var resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Returns a provider for the given connection mode.
+     *
+     * @param mode "direct" opens a new connection per call, "pooled" reuses
+     *             connections and prepared statements.
+     */
+    public static ConnectionProvider connections(String connectionString, String mode) {
+        return switch (mode) {
+            case "direct" -> ConnectionProvider.forUrl(connectionString);
+            case "pooled" -> new ConnectionPool(connectionString);
+            default -> throw new IllegalArgumentException("Unknown connection mode: " + mode);
+        };
+    }
+
+    /**
+     * Closes the provider if it is a pool.
+     */
+    public static void release(ConnectionProvider provider) {
+        if (provider instanceof ConnectionPool pool) {
+            pool.close();
+        }
+    }
+
+    private static void generateSynthetic(Path file) throws IOException, SQLException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + partial)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("""
+                        CREATE TABLE Artist (
+                            ArtistId INTEGER NOT NULL,
+                            Name NVARCHAR(120),
+                            CONSTRAINT PK_Artist PRIMARY KEY (ArtistId)
+                        )""");
+                statement.executeUpdate("""
+                        CREATE TABLE Album (
+                            AlbumId INTEGER NOT NULL,
+                            Title NVARCHAR(160) NOT NULL,
+                            ArtistId INTEGER NOT NULL,
+                            CONSTRAINT PK_Album PRIMARY KEY (AlbumId),
+                            FOREIGN KEY (ArtistId) REFERENCES Artist (ArtistId)
+                        )""");
+            }
+
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement artists = connection
+                    .prepareStatement("INSERT INTO Artist (ArtistId, Name) VALUES (?, ?)");
+                    PreparedStatement albums = connection
+                            .prepareStatement("INSERT INTO Album (AlbumId, Title, ArtistId) VALUES (?, ?, ?)")) {
+
+                long albumId = 1;
+                for (long artistId = 1; artistId <= SYNTHETIC_ARTISTS; artistId++) {
+                    artists.setLong(1, artistId);
+                    // Reversing the digits spreads the names so that ORDER BY Name differs from id order
+                    artists.setString(2, "Artist " + new StringBuilder(Long.toString(artistId)).reverse());
+                    artists.addBatch();
+
+                    for (int i = 0; i < SYNTHETIC_ALBUMS_PER_ARTIST; i++) {
+                        albums.setLong(1, albumId);
+                        albums.setString(2, "Album " + albumId);
+                        albums.setLong(3, artistId);
+                        albums.addBatch();
+                        albumId++;
+                    }
+
+                    if (artistId % 10_000 == 0) {
+                        artists.executeBatch();
+                        albums.executeBatch();
+                    }
+                }
+                artists.executeBatch();
+                albums.executeBatch();
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                // The same index as in the Chinook database
+                statement.executeUpdate("CREATE INDEX IFK_AlbumArtistId ON Album (ArtistId)");
+            }
+            connection.commit();
+        }
+
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
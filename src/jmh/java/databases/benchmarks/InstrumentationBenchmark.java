@@ -0,0 +1,66 @@
+package databases.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import databases.connection.ConnectionPool;
+import databases.connection.ConnectionProvider;
+import databases.metrics.InstrumentedConnectionProvider;
+import databases.metrics.QueryMetrics;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+
+/**
+ * Measures the overhead of the query instrumentation on the hot path. "none"
+ * uses the pool directly, "disabled" wraps it in an instrumented provider whose
+ * metrics are turned off, and "enabled" records all metrics. The gc profiler
+ * shows the allocations per call, which should be the same for "none" and
+ * "disabled".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InstrumentationBenchmark {
+
+    @Param({ "none", "disabled", "enabled" })
+    public String instrumentation;
+
+    private ConnectionPool pool;
+    private ArtistDAO artistDAO;
+    private long maxArtistId;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.prepare("chinook");
+        maxArtistId = BenchmarkDatabase.maxArtistId(url);
+        pool = new ConnectionPool(url);
+
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.setEnabled(instrumentation.equals("enabled"));
+
+        ConnectionProvider provider = instrumentation.equals("none")
+                ? pool
+                : new InstrumentedConnectionProvider(pool, metrics);
+        artistDAO = new ArtistDAO(provider);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Artist getArtistById() {
+        return artistDAO.getArtistById(ThreadLocalRandom.current().nextLong(1, maxArtistId + 1));
+    }
+}
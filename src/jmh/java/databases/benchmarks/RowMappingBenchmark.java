@@ -0,0 +1,81 @@
+package databases.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.AlbumDAO;
+
+/**
+ * Compares the allocations of full table scans that create an object per row
+ * with the ones that pass the columns straight to a LongObjConsumer. Look at
+ * the gc.alloc.rate.norm column printed by the gc profiler, which is enabled in
+ * build.gradle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RowMappingBenchmark {
+
+    @Param({ "chinook", "synthetic" })
+    public String dataset;
+
+    private ConnectionProvider provider;
+    private ArtistDAO artistDAO;
+    private AlbumDAO albumDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.prepare(dataset);
+        provider = BenchmarkDatabase.connections(url, "pooled");
+        artistDAO = new ArtistDAO(provider);
+        albumDAO = new AlbumDAO(provider);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.release(provider);
+    }
+
+    @Benchmark
+    public List<Artist> artistsAsList() {
+        return artistDAO.getArtists();
+    }
+
+    @Benchmark
+    public void artistsAsStream(Blackhole blackhole) {
+        try (Stream<Artist> artists = artistDAO.streamArtists()) {
+            artists.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void artistIdsAndNames(Blackhole blackhole) {
+        artistDAO.forEachArtistIdAndName((id, name) -> {
+            blackhole.consume(id);
+            blackhole.consume(name);
+        });
+    }
+
+    @Benchmark
+    public void albumIdsAndTitles(Blackhole blackhole) {
+        albumDAO.forEachAlbumIdAndTitle((id, title) -> {
+            blackhole.consume(id);
+            blackhole.consume(title);
+        });
+    }
+}
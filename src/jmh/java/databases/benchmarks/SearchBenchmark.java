@@ -0,0 +1,93 @@
+package databases.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import databases.connection.ConnectionProvider;
+import databases.search.Fts5CatalogSearch;
+import databases.search.SearchHit;
+import databases.search.TrigramCatalogSearch;
+
+/**
+ * Compares the catalog searches with the naive alternative: scanning both
+ * tables with {@code LIKE '%query%'}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    private static final String LIKE_SCAN = """
+            SELECT ArtistId, Name FROM Artist WHERE Name LIKE ?
+            UNION ALL
+            SELECT AlbumId, Title FROM Album WHERE Title LIKE ?
+            LIMIT ?""";
+
+    private static final int LIMIT = 10;
+
+    @Param({ "chinook", "synthetic" })
+    public String dataset;
+
+    @Param({ "zep", "led zeppelin", "californiaction" })
+    public String query;
+
+    private ConnectionProvider provider;
+    private Fts5CatalogSearch fts5Search;
+    private TrigramCatalogSearch trigramSearch;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.prepare(dataset);
+        provider = BenchmarkDatabase.connections(url, "pooled");
+
+        fts5Search = new Fts5CatalogSearch(provider);
+        fts5Search.install();
+        trigramSearch = new TrigramCatalogSearch(provider);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.release(provider);
+    }
+
+    @Benchmark
+    public List<SearchHit> fts5() {
+        return fts5Search.search(query, LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchHit> trigramIndex() {
+        return trigramSearch.search(query, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> likeScan() throws Exception {
+        List<String> texts = new ArrayList<>();
+        try (Connection connection = provider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(LIKE_SCAN)) {
+            statement.setString(1, "%" + query + "%");
+            statement.setString(2, "%" + query + "%");
+            statement.setInt(3, LIMIT);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    texts.add(resultSet.getString(2));
+                }
+            }
+        }
+        return texts;
+    }
+}
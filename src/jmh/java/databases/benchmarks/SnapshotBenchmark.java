@@ -0,0 +1,70 @@
+package databases.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part03.Album;
+import databases.snapshot.CatalogSnapshot;
+
+/**
+ * Measures the lookups of the columnar CatalogSnapshot and how long loading a
+ * new snapshot takes. The estimated heap use of the snapshot and of the same
+ * data as Artist and Album objects is printed after the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnapshotBenchmark {
+
+    @Param({ "chinook", "synthetic" })
+    public String dataset;
+
+    private ConnectionProvider provider;
+    private CatalogSnapshot snapshot;
+    private long maxArtistId;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.prepare(dataset);
+        maxArtistId = BenchmarkDatabase.maxArtistId(url);
+        provider = BenchmarkDatabase.connections(url, "pooled");
+        snapshot = CatalogSnapshot.load(provider);
+
+        System.out.printf("%nSnapshot: %,d bytes, object model: %,d bytes%n", snapshot.estimatedBytes(),
+                snapshot.estimatedObjectModelBytes());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.release(provider);
+    }
+
+    @Benchmark
+    public Artist getArtistById() {
+        return snapshot.getArtistById(ThreadLocalRandom.current().nextLong(1, maxArtistId + 1));
+    }
+
+    @Benchmark
+    public List<Album> getAlbumsByArtist() {
+        return snapshot.getAlbumsByArtist(new Artist(ThreadLocalRandom.current().nextLong(1, maxArtistId + 1), ""));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CatalogSnapshot load() {
+        return CatalogSnapshot.load(provider);
+    }
+}
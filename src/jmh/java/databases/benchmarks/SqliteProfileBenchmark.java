@@ -0,0 +1,79 @@
+package databases.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import databases.connection.ConnectionPool;
+import databases.connection.ConnectionProvider;
+import databases.connection.SqliteProfile;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+
+/**
+ * Compares the SQLite profiles against SQLite's default settings on a copy of
+ * the Chinook database. All variants use a connection pool, so the pragmas are
+ * applied once per connection and not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SqliteProfileBenchmark {
+
+    @Param({ "DEFAULT", "READ_HEAVY", "WRITE_HEAVY", "BULK_LOAD" })
+    public String profile;
+
+    private ConnectionPool pool;
+    private ArtistDAO artistDAO;
+    private AlbumDAO albumDAO;
+    private long maxArtistId;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.prepare("chinook");
+        maxArtistId = BenchmarkDatabase.maxArtistId(url);
+
+        ConnectionProvider factory = profile.equals("DEFAULT")
+                ? ConnectionProvider.forUrl(url)
+                : SqliteProfile.valueOf(profile).connections(url);
+
+        pool = new ConnectionPool(factory, ConnectionPool.DEFAULT_MAX_SIZE, ConnectionPool.DEFAULT_MAX_WAIT,
+                ConnectionPool.DEFAULT_IDLE_TIMEOUT);
+        artistDAO = new ArtistDAO(pool);
+        albumDAO = new AlbumDAO(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public List<Artist> getArtists() {
+        return artistDAO.getArtists();
+    }
+
+    @Benchmark
+    public Artist getArtistById() {
+        return artistDAO.getArtistById(ThreadLocalRandom.current().nextLong(1, maxArtistId + 1));
+    }
+
+    @Benchmark
+    public boolean addAndDeleteAlbum() {
+        Album album = new Album("Benchmark album", 1);
+        albumDAO.addAlbum(album);
+        return albumDAO.deleteAlbum(album);
+    }
+}
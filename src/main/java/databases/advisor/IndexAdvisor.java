@@ -0,0 +1,351 @@
+package databases.advisor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Checks the query plans of SQL statements and suggests indexes for them.
+ *
+ * The plans are read with EXPLAIN QUERY PLAN on SQLite and EXPLAIN on MySQL.
+ * They are checked for three problems:
+ *
+ * - a query with a WHERE clause that scans the whole table
+ *
+ * - sorting the rows in a temporary B-tree for ORDER BY
+ *
+ * - SQLite creating an automatic index for a join on every execution
+ *
+ * Reading every row of a table without a WHERE clause is not a problem in
+ * itself, e.g. when exporting the whole table.
+ *
+ * The suggested indexes start with the columns compared for equality in the
+ * WHERE clause, then the columns compared with ranges and finally the ORDER BY
+ * columns. The statements are parsed with simple patterns that understand the
+ * kind of SQL the DAOs use, not every possible statement. On SQLite, every
+ * suggestion is tried out in a transaction that is rolled back, and only the
+ * ones that actually fix a problem are returned.
+ *
+ * The statements to check can be collected by running the DAOs through an
+ * InstrumentedConnectionProvider and reading {@code QueryMetrics.getStatements()}.
+ */
+public class IndexAdvisor {
+
+    private static final String IDENTIFIER = "(?:([A-Za-z_]\\w*)\\.)?([A-Za-z_]\\w*)";
+
+    private static final Pattern FROM_TABLE = Pattern
+            .compile("\\b(?:FROM|UPDATE|INTO)\\s+([A-Za-z_]\\w*)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE_CLAUSE = Pattern.compile(
+            "\\bWHERE\\b(.*?)(?:\\bGROUP\\s+BY\\b|\\bORDER\\s+BY\\b|\\bLIMIT\\b|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ORDER_BY_CLAUSE = Pattern.compile("\\bORDER\\s+BY\\b(.*?)(?:\\bLIMIT\\b|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern SELECT_LIST = Pattern.compile("^\\s*SELECT\\s+(.*?)\\s+FROM\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern EQUALITY = Pattern.compile(IDENTIFIER + "\\s*(?:=\\s*\\?|IN\\s*\\()",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern RANGE = Pattern.compile(IDENTIFIER + "\\s*(?:>=?|<=?)\\s*\\?");
+    private static final Pattern ROW_VALUE_RANGE = Pattern.compile("\\(([\\w\\s.,]+)\\)\\s*(?:>=?|<=?)\\s*\\(");
+    private static final Pattern ORDER_COLUMN = Pattern.compile(IDENTIFIER + "(?:\\s+(?:ASC|DESC))?",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern SQLITE_SCAN = Pattern.compile("^SCAN (\\w+)$");
+    private static final Pattern SQLITE_AUTOMATIC_INDEX = Pattern
+            .compile("^SEARCH (\\w+) USING AUTOMATIC (?:COVERING |PARTIAL )*INDEX \\(([^)]*)\\)");
+
+    private final ConnectionProvider connectionProvider;
+
+    public IndexAdvisor(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Returns the problems in the query plans of the given statements. An empty
+     * list means that every statement uses indexes where it matters.
+     */
+    public List<PlanFinding> check(Collection<String> statements) {
+        try (Connection connection = connectionProvider.getConnection()) {
+            return check(connection, statements);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<PlanFinding> check(Connection connection, Collection<String> statements) throws SQLException {
+        boolean sqlite = isSqlite(connection);
+        List<PlanFinding> findings = new ArrayList<>();
+        for (String sql : statements) {
+            if (sqlite) {
+                explainSqlite(connection, sql, findings);
+            } else {
+                explainMySql(connection, sql, findings);
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Suggests indexes that fix the problems found in the given statements.
+     *
+     * @param statements the statements to check.
+     * @param covering   whether to add the other selected columns of the table to
+     *                   the end of the index, so that the query can be answered
+     *                   from the index alone.
+     */
+    public List<IndexProposal> propose(Collection<String> statements, boolean covering) {
+        try (Connection connection = connectionProvider.getConnection()) {
+            List<PlanFinding> findings = check(connection, statements);
+
+            List<IndexProposal> candidates = new ArrayList<>();
+            for (PlanFinding finding : findings) {
+                IndexProposal candidate = proposalFor(finding, covering);
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            }
+
+            List<IndexProposal> proposals = withoutRedundant(candidates);
+            if (isSqlite(connection)) {
+                proposals = keepEffective(connection, proposals, statements, findings.size());
+            }
+            return proposals;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the given indexes, unless they already exist.
+     */
+    public void apply(Collection<IndexProposal> proposals) {
+        try (Connection connection = connectionProvider.getConnection();
+                Statement statement = connection.createStatement()) {
+            for (IndexProposal proposal : proposals) {
+                statement.executeUpdate(proposal.toSql());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isSqlite(Connection connection) throws SQLException {
+        return "SQLite".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+    }
+
+    /**
+     * Prepares the EXPLAIN statement with every parameter set to NULL. The plan
+     * does not depend on the parameter values.
+     */
+    private static PreparedStatement prepareExplain(Connection connection, String explain, String sql)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(explain + " " + sql);
+        int parameters = sql.length() - sql.replace("?", "").length();
+        for (int i = 1; i <= parameters; i++) {
+            statement.setNull(i, Types.NULL);
+        }
+        return statement;
+    }
+
+    private static void explainSqlite(Connection connection, String sql, List<PlanFinding> findings)
+            throws SQLException {
+        boolean filtered = WHERE_CLAUSE.matcher(sql).find();
+        String fromTable = fromTable(sql);
+
+        try (PreparedStatement statement = prepareExplain(connection, "EXPLAIN QUERY PLAN", sql);
+                ResultSet plan = statement.executeQuery()) {
+            while (plan.next()) {
+                String detail = plan.getString("detail");
+
+                Matcher scan = SQLITE_SCAN.matcher(detail);
+                Matcher automatic = SQLITE_AUTOMATIC_INDEX.matcher(detail);
+                if (scan.find() && filtered) {
+                    findings.add(new PlanFinding(sql, PlanFinding.Problem.FULL_SCAN, scan.group(1), detail));
+                } else if (automatic.find()) {
+                    findings.add(new PlanFinding(sql, PlanFinding.Problem.AUTOMATIC_INDEX, automatic.group(1),
+                            detail));
+                } else if (detail.startsWith("USE TEMP B-TREE FOR ORDER BY")) {
+                    findings.add(new PlanFinding(sql, PlanFinding.Problem.TEMP_SORT, fromTable, detail));
+                }
+            }
+        }
+    }
+
+    private static void explainMySql(Connection connection, String sql, List<PlanFinding> findings)
+            throws SQLException {
+        boolean filtered = WHERE_CLAUSE.matcher(sql).find();
+
+        try (PreparedStatement statement = prepareExplain(connection, "EXPLAIN", sql);
+                ResultSet plan = statement.executeQuery()) {
+            int row = 0;
+            while (plan.next()) {
+                String table = plan.getString("table");
+                String type = plan.getString("type");
+                String extra = plan.getString("Extra");
+
+                // The first table of a join is read in full anyway, the others should not be
+                if ("ALL".equalsIgnoreCase(type) && (filtered || row > 0)) {
+                    findings.add(new PlanFinding(sql, PlanFinding.Problem.FULL_SCAN, table, "type=ALL"));
+                }
+                if (extra != null && (extra.contains("Using filesort") || extra.contains("Using temporary"))) {
+                    findings.add(new PlanFinding(sql, PlanFinding.Problem.TEMP_SORT, table, extra));
+                }
+                row++;
+            }
+        }
+    }
+
+    /**
+     * Builds the index for one finding from the columns of the statement.
+     */
+    private static IndexProposal proposalFor(PlanFinding finding, boolean covering) {
+        String sql = finding.sql();
+        String table = finding.table();
+        String fromTable = fromTable(sql);
+        Set<String> columns = new LinkedHashSet<>();
+
+        if (finding.problem() == PlanFinding.Problem.AUTOMATIC_INDEX) {
+            // The plan already names the columns, e.g. "(ArtistId=?)"
+            Matcher automatic = SQLITE_AUTOMATIC_INDEX.matcher(finding.detail());
+            if (automatic.find()) {
+                for (String term : automatic.group(2).split(" AND ")) {
+                    columns.add(term.replaceAll("[^\\w].*$", ""));
+                }
+            }
+        } else {
+            Matcher where = WHERE_CLAUSE.matcher(sql);
+            if (where.find()) {
+                String condition = where.group(1);
+                addColumns(EQUALITY.matcher(condition), table, fromTable, columns);
+
+                // A sort is avoided by the ORDER BY columns, and a range inside an OR
+                // cannot use an index at all
+                boolean useRanges = finding.problem() == PlanFinding.Problem.FULL_SCAN
+                        && !condition.toUpperCase().contains(" OR ");
+                if (useRanges) {
+                    addColumns(RANGE.matcher(condition), table, fromTable, columns);
+
+                    Matcher rowValue = ROW_VALUE_RANGE.matcher(condition);
+                    while (rowValue.find()) {
+                        addColumns(ORDER_COLUMN.matcher(rowValue.group(1)), table, fromTable, columns);
+                    }
+                }
+            }
+
+            Matcher orderBy = ORDER_BY_CLAUSE.matcher(sql);
+            if (orderBy.find()) {
+                // Only the leading ORDER BY columns of this table can come from its index
+                for (String term : orderBy.group(1).split(",")) {
+                    Matcher column = ORDER_COLUMN.matcher(term.trim());
+                    if (!column.matches() || !belongsTo(column.group(1), table, fromTable)) {
+                        break;
+                    }
+                    columns.add(column.group(2));
+                }
+            }
+        }
+
+        if (columns.isEmpty() || table == null) {
+            return null;
+        }
+
+        if (covering) {
+            addSelectedColumns(sql, table, fromTable, columns);
+        }
+        return new IndexProposal(table, new ArrayList<>(columns));
+    }
+
+    private static void addColumns(Matcher matcher, String table, String fromTable, Set<String> columns) {
+        while (matcher.find()) {
+            if (belongsTo(matcher.group(1), table, fromTable)) {
+                columns.add(matcher.group(2));
+            }
+        }
+    }
+
+    private static void addSelectedColumns(String sql, String table, String fromTable, Set<String> columns) {
+        Matcher select = SELECT_LIST.matcher(sql);
+        if (!select.find()) {
+            return;
+        }
+        for (String term : select.group(1).split(",")) {
+            Matcher column = ORDER_COLUMN.matcher(term.trim());
+            if (column.matches() && belongsTo(column.group(1), table, fromTable)) {
+                columns.add(column.group(2));
+            }
+        }
+    }
+
+    /**
+     * Unqualified columns are assumed to belong to the first table after FROM.
+     */
+    private static boolean belongsTo(String qualifier, String table, String fromTable) {
+        String owner = qualifier != null ? qualifier : fromTable;
+        return owner != null && owner.equalsIgnoreCase(table);
+    }
+
+    private static String fromTable(String sql) {
+        Matcher from = FROM_TABLE.matcher(sql);
+        return from.find() ? from.group(1) : null;
+    }
+
+    /**
+     * Removes duplicates and proposals that are a prefix of another proposal.
+     */
+    private static List<IndexProposal> withoutRedundant(List<IndexProposal> candidates) {
+        List<IndexProposal> proposals = new ArrayList<>();
+        for (IndexProposal candidate : candidates) {
+            boolean redundant = false;
+            for (IndexProposal other : candidates) {
+                if (other != candidate && other.covers(candidate)
+                        && (other.columns().size() > candidate.columns().size()
+                                || candidates.indexOf(other) < candidates.indexOf(candidate))) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                proposals.add(candidate);
+            }
+        }
+        return proposals;
+    }
+
+    /**
+     * Tries each proposal inside a transaction that is rolled back, and keeps
+     * the ones after which fewer problems are found.
+     */
+    private List<IndexProposal> keepEffective(Connection connection, List<IndexProposal> proposals,
+            Collection<String> statements, int findingsBefore) throws SQLException {
+        List<IndexProposal> effective = new ArrayList<>();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try {
+            for (IndexProposal proposal : proposals) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(proposal.toSql());
+                    if (check(connection, statements).size() < findingsBefore) {
+                        effective.add(proposal);
+                    }
+                } finally {
+                    connection.rollback();
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return effective;
+    }
+}
@@ -0,0 +1,39 @@
+package databases.advisor;
+
+import java.util.List;
+
+/**
+ * An index suggested by the {@link IndexAdvisor}.
+ *
+ * @param table   the table to index.
+ * @param columns the indexed columns in order.
+ */
+public record IndexProposal(String table, List<String> columns) {
+
+    public IndexProposal {
+        columns = List.copyOf(columns);
+    }
+
+    /**
+     * @return e.g. "IX_Album_ArtistId_AlbumId".
+     */
+    public String name() {
+        return "IX_" + table + "_" + String.join("_", columns);
+    }
+
+    /**
+     * @return the CREATE INDEX statement of this index.
+     */
+    public String toSql() {
+        return "CREATE INDEX IF NOT EXISTS " + name() + " ON " + table + " (" + String.join(", ", columns) + ")";
+    }
+
+    /**
+     * Returns true if an index on these columns can also serve the other
+     * proposal, because the other proposal's columns are a prefix of these.
+     */
+    boolean covers(IndexProposal other) {
+        return table.equalsIgnoreCase(other.table) && columns.size() >= other.columns.size()
+                && columns.subList(0, other.columns.size()).equals(other.columns);
+    }
+}
@@ -0,0 +1,31 @@
+package databases.advisor;
+
+/**
+ * A problem found in the query plan of a statement.
+ *
+ * @param sql     the statement.
+ * @param problem what is wrong with the plan.
+ * @param table   the table the problem concerns.
+ * @param detail  the line of the query plan that revealed the problem.
+ */
+public record PlanFinding(String sql, Problem problem, String table, String detail) {
+
+    public enum Problem {
+        /**
+         * A filtered query reads every row of the table.
+         */
+        FULL_SCAN,
+
+        /**
+         * The rows are sorted in a temporary B-tree (MySQL: filesort) instead of
+         * being read in index order.
+         */
+        TEMP_SORT,
+
+        /**
+         * SQLite builds a temporary index for every execution of the query,
+         * because there is no permanent one.
+         */
+        AUTOMATIC_INDEX
+    }
+}
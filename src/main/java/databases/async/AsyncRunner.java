@@ -0,0 +1,122 @@
+package databases.async;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking DAO calls on virtual threads and returns their results as
+ * CompletableFutures.
+ *
+ * Virtual threads are cheap, so thousands of calls can wait at the same time
+ * without tying up platform threads. The database can still only do a limited
+ * amount of work at once, though. Each runner therefore has a semaphore that
+ * limits how many calls actually run concurrently, e.g. to the size of the
+ * connection pool. The other calls wait for a permit instead of piling up on
+ * the pool or the database lock.
+ *
+ * Every call has a timeout. When the timeout passes or the returned future is
+ * cancelled, the virtual thread running the call is interrupted. A call that
+ * is still waiting for a permit then never reaches the database.
+ */
+public class AsyncRunner implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration defaultTimeout;
+
+    /**
+     * @param maxConcurrency how many calls may run at the same time.
+     * @param defaultTimeout the timeout used when a call does not specify one.
+     */
+    public AsyncRunner(int maxConcurrency, Duration defaultTimeout) {
+        this(Executors.newVirtualThreadPerTaskExecutor(), maxConcurrency, defaultTimeout);
+    }
+
+    /**
+     * Creates a runner that shares the executor of another runner, but has its
+     * own concurrency limit.
+     */
+    public AsyncRunner(AsyncRunner other, int maxConcurrency) {
+        this(other.executor, maxConcurrency, other.defaultTimeout);
+    }
+
+    private AsyncRunner(ExecutorService executor, int maxConcurrency, Duration defaultTimeout) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1, was " + maxConcurrency);
+        }
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Runs the task with the default timeout.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return submit(task, defaultTimeout);
+    }
+
+    /**
+     * Runs the task on a virtual thread once a permit is available.
+     *
+     * @param task    the blocking call to run, e.g. {@code () -> dao.getArtists()}.
+     * @param timeout how long to wait for the result, including the time spent
+     *                waiting for a permit. When it passes, the future completes
+     *                with a TimeoutException.
+     * @return a future that completes with the result of the task.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task, Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        Future<?> running = executor.submit(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                // Cancelled or timed out while waiting, the future is already completed
+                return;
+            }
+            try {
+                if (!result.isDone()) {
+                    result.complete(task.get());
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+
+        result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+
+        // Cancellation or a timeout stops the virtual thread as well
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                running.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * @return the number of calls currently waiting for a permit.
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Stops accepting new calls. Calls that have already been submitted are
+     * completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
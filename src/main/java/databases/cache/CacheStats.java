@@ -0,0 +1,22 @@
+package databases.cache;
+
+/**
+ * A snapshot of the counters of a cache.
+ *
+ * @param hits      lookups answered from the cache.
+ * @param misses    lookups that had to wait for a load.
+ * @param loads     how many times the database was actually queried. This is
+ *                  lower than misses when concurrent misses share a load.
+ * @param evictions entries removed to stay within the size limit.
+ * @param size      the number of entries currently in the cache.
+ */
+public record CacheStats(long hits, long misses, long loads, long evictions, long size) {
+
+    /**
+     * @return the share of lookups answered from the cache, between 0 and 1.
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,169 @@
+package databases.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded read-through cache. Values are loaded with the given loader
+ * function on the first lookup and kept until they expire or are evicted.
+ *
+ * - When the cache is full, the least recently used entry is evicted.
+ *
+ * - Entries expire after {@code ttl}. A loader result of null means "not
+ * found" and is cached for {@code negativeTtl}, so repeated lookups of missing
+ * keys do not hit the database either.
+ *
+ * - If several threads miss the same key at the same time, only one of them
+ * runs the loader and the others wait for its result.
+ *
+ * @param <K> the key type, e.g. an artist id.
+ * @param <V> the value type, e.g. Artist.
+ */
+public class LoadingCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Function<? super K, ? extends V> loader;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize     the maximum number of cached entries.
+     * @param ttl         how long a loaded value stays valid.
+     * @param negativeTtl how long a "not found" result stays valid,
+     *                    Duration.ZERO disables negative caching.
+     * @param loader      loads the value of a key, or returns null if there is
+     *                    none.
+     */
+    public LoadingCache(int maxSize, Duration ttl, Duration negativeTtl, Function<? super K, ? extends V> loader) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.loader = loader;
+
+        // Access order makes the map iterate from the least recently used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LoadingCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the value for the key, loading it if it is not cached. Returns null
+     * if the loader found no value.
+     */
+    public V get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.value();
+                }
+                entries.remove(key);
+            }
+        }
+
+        misses.increment();
+
+        CompletableFuture<V> ownLoad = new CompletableFuture<>();
+        CompletableFuture<V> otherLoad = inFlight.putIfAbsent(key, ownLoad);
+        if (otherLoad != null) {
+            return await(otherLoad);
+        }
+
+        try {
+            loads.increment();
+            V value = loader.apply(key);
+
+            // If the key was invalidated while loading, the value may be stale and is
+            // only handed to the waiting callers, not stored. invalidate() takes the
+            // same lock, so it can not slip in between the check and the store.
+            synchronized (entries) {
+                if (inFlight.remove(key, ownLoad)) {
+                    store(key, value);
+                }
+            }
+            ownLoad.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, ownLoad);
+            ownLoad.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Must be called with the lock on entries held.
+     */
+    private void store(K key, V value) {
+        long lifetime = value == null ? negativeTtlNanos : ttlNanos;
+        if (lifetime > 0) {
+            entries.put(key, new Entry<>(value, System.nanoTime() + lifetime));
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the key from the cache, so that the next lookup loads it again.
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            inFlight.remove(key);
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            inFlight.clear();
+            entries.clear();
+        }
+    }
+
+    public CacheStats stats() {
+        long size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), size);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,24 @@
+package databases.cache;
+
+/**
+ * A snapshot of the counters of a {@link QueryResultCache}.
+ *
+ * @param hits          lookups answered from the cache.
+ * @param misses        lookups that ran the query.
+ * @param evictions     results removed to stay within the memory limit.
+ * @param invalidations calls to invalidateTable() and invalidateAll().
+ * @param size          the number of results currently in the cache.
+ * @param bytes         the estimated memory use of the cached results.
+ * @param maxBytes      the memory limit of the cache.
+ */
+public record QueryCacheStats(long hits, long misses, long evictions, long invalidations, long size, long bytes,
+        long maxBytes) {
+
+    /**
+     * @return the share of lookups answered from the cache, between 0 and 1.
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,209 @@
+package databases.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caches the results of list queries, such as all artists or the albums of one
+ * artist, in memory. An entry is identified by the SQL of the query and the
+ * values of its parameters, so the same query with different parameters gets
+ * its own entry.
+ *
+ * - Results are stored as immutable lists, so all callers can share them.
+ *
+ * - The cache is limited by the estimated memory use of the results, not by
+ * the number of entries, because one result may be a handful of albums and
+ * another thousands of artists. When the limit is exceeded, the least recently
+ * used entries are evicted until the cache fits again. A result that is larger
+ * than the whole limit is returned but not cached.
+ *
+ * - Every entry is tagged with the tables its query reads. After a write,
+ * {@link #invalidateTable(String)} removes all entries that read the table. A
+ * result that was being loaded while its table was invalidated is not stored,
+ * because it may have been read before the write.
+ *
+ * Unlike {@link LoadingCache}, concurrent misses of the same query each run
+ * the query.
+ */
+public class QueryResultCache {
+
+    /**
+     * The estimated size of an entry without its elements: the key, the entry
+     * and the list objects.
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long maxBytes;
+
+    // Access order makes the map iterate from the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Key>> keysByTable = new HashMap<>();
+    private final Map<String, Long> invalidationsByTable = new HashMap<>();
+
+    private long generation;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maxBytes the maximum estimated memory use of the cached results.
+     */
+    public QueryResultCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1, was " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached result of the query, or runs the query with the loader
+     * and caches its result.
+     *
+     * @param sql        the SQL of the query, the first part of the key.
+     * @param parameters the values bound to the query, the second part of the key.
+     * @param tables     the tables the query reads.
+     * @param weigher    estimates the memory use of one element in bytes.
+     * @param loader     runs the query.
+     * @return an immutable list.
+     */
+    public <T> List<T> get(String sql, List<?> parameters, Set<String> tables, ToLongFunction<? super T> weigher,
+            Supplier<? extends List<T>> loader) {
+        Key key = new Key(sql, List.copyOf(parameters));
+        Map<String, Long> invalidationsBefore = new HashMap<>();
+        long generationBefore;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                List<T> result = (List<T>) entry.result();
+                return result;
+            }
+            misses++;
+            generationBefore = generation;
+            for (String table : tables) {
+                invalidationsBefore.put(table, invalidationsByTable.getOrDefault(table, 0L));
+            }
+        }
+
+        List<T> result = List.copyOf(loader.get());
+
+        long weight = ENTRY_OVERHEAD_BYTES + 4L * result.size();
+        for (T element : result) {
+            weight += weigher.applyAsLong(element);
+        }
+
+        synchronized (this) {
+            if (generation != generationBefore) {
+                return result;
+            }
+            for (String table : tables) {
+                if (!invalidationsByTable.getOrDefault(table, 0L).equals(invalidationsBefore.get(table))) {
+                    return result;
+                }
+            }
+            if (weight <= maxBytes) {
+                store(key, new Entry(result, Set.copyOf(tables), weight));
+            }
+        }
+        return result;
+    }
+
+    private void store(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.weight();
+        }
+        bytes += entry.weight();
+        for (String table : entry.tables()) {
+            keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+        }
+
+        var eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            var evicted = eldest.next();
+            eldest.remove();
+            forget(evicted.getKey(), evicted.getValue());
+            evictions++;
+        }
+    }
+
+    /**
+     * Updates the memory use and the table index after an entry was removed
+     * from the entries map.
+     */
+    private void forget(Key key, Entry entry) {
+        bytes -= entry.weight();
+        for (String table : entry.tables()) {
+            Set<Key> keys = keysByTable.get(table);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByTable.remove(table);
+            }
+        }
+    }
+
+    /**
+     * Removes every result whose query reads the given table. Call this after
+     * writing to the table.
+     *
+     * @param table the name of the table, as given to get().
+     */
+    public synchronized void invalidateTable(String table) {
+        invalidations++;
+        invalidationsByTable.merge(table, 1L, Long::sum);
+
+        Set<Key> keys = keysByTable.get(table);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : List.copyOf(keys)) {
+            forget(key, entries.remove(key));
+        }
+    }
+
+    /**
+     * Removes all results.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations++;
+        entries.clear();
+        keysByTable.clear();
+        bytes = 0;
+    }
+
+    public synchronized QueryCacheStats stats() {
+        return new QueryCacheStats(hits, misses, evictions, invalidations, entries.size(), bytes, maxBytes);
+    }
+
+    /**
+     * Estimates the memory used by a String, assuming compressed object
+     * pointers: a 24 byte object and a byte array with a 16 byte header, one
+     * byte per character for Latin-1 text and two for other text. Meant for
+     * writing weighers.
+     */
+    public static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        long array = 16 + (long) value.length() * (latin1 ? 1 : 2);
+        return 24 + (array + 7) / 8 * 8;
+    }
+
+    private record Key(String sql, List<Object> parameters) {
+    }
+
+    private record Entry(List<?> result, Set<String> tables, long weight) {
+    }
+}
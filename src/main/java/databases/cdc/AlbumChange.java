@@ -0,0 +1,23 @@
+package databases.cdc;
+
+/**
+ * One change to the Album table, read from the change log.
+ *
+ * @param sequence         the position of the change in the log. Later changes
+ *                         always have larger numbers.
+ * @param type             whether the album was inserted, updated or deleted.
+ * @param albumId          the id of the album.
+ * @param title            the title after the change, or before it for a
+ *                         delete.
+ * @param artistId         the artist after the change, or before it for a
+ *                         delete.
+ * @param previousArtistId the artist before the change. Same as artistId for
+ *                         inserts and deletes.
+ */
+public record AlbumChange(long sequence, Type type, long albumId, String title, long artistId,
+        long previousArtistId) {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+}
@@ -0,0 +1,294 @@
+package databases.cdc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Delivers the changes made to the Album table to listeners, so that caches
+ * and snapshots can be updated change by change instead of reloading the
+ * whole table.
+ *
+ * Triggers on the Album table append every insert, update and delete to the
+ * AlbumChangeLog table, whatever process or DAO made the change. The feed
+ * reads the log in order of its Sequence column and remembers how far it has
+ * got in the AlbumChangeOffset table, under the consumer name given to the
+ * constructor. The position only moves forward after every listener has
+ * processed a batch, so a consumer that crashes or is restarted continues
+ * where it left off, and may see the last batch again.
+ *
+ * The triggers use SQLite syntax. SQLite has only one writer at a time, so the
+ * changes are committed in Sequence order and the reader never skips a change
+ * that is committed later with a smaller number.
+ */
+public class AlbumChangeFeed implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final System.Logger log = System.getLogger(AlbumChangeFeed.class.getName());
+
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS AlbumChangeLog (
+                Sequence INTEGER PRIMARY KEY AUTOINCREMENT,
+                Operation TEXT NOT NULL,
+                AlbumId INTEGER NOT NULL,
+                Title NVARCHAR(160),
+                ArtistId INTEGER NOT NULL,
+                PreviousArtistId INTEGER NOT NULL
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS AlbumChangeOffset (
+                Consumer TEXT PRIMARY KEY,
+                Sequence INTEGER NOT NULL
+            )""",
+            """
+            CREATE TRIGGER IF NOT EXISTS AlbumChangeLog_Insert AFTER INSERT ON Album BEGIN
+                INSERT INTO AlbumChangeLog (Operation, AlbumId, Title, ArtistId, PreviousArtistId)
+                VALUES ('INSERT', new.AlbumId, new.Title, new.ArtistId, new.ArtistId);
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS AlbumChangeLog_Update AFTER UPDATE ON Album BEGIN
+                INSERT INTO AlbumChangeLog (Operation, AlbumId, Title, ArtistId, PreviousArtistId)
+                VALUES ('UPDATE', new.AlbumId, new.Title, new.ArtistId, old.ArtistId);
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS AlbumChangeLog_Delete AFTER DELETE ON Album BEGIN
+                INSERT INTO AlbumChangeLog (Operation, AlbumId, Title, ArtistId, PreviousArtistId)
+                VALUES ('DELETE', old.AlbumId, old.Title, old.ArtistId, old.ArtistId);
+            END""" };
+
+    private static final String SELECT_CHANGES = """
+            SELECT Sequence, Operation, AlbumId, Title, ArtistId, PreviousArtistId
+            FROM AlbumChangeLog
+            WHERE Sequence > ?
+            ORDER BY Sequence ASC
+            LIMIT ?""";
+
+    private final ConnectionProvider connectionProvider;
+    private final String consumer;
+    private final int batchSize;
+    private final List<AlbumChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private long position;
+    private Thread poller;
+    private volatile boolean running;
+
+    /**
+     * Creates a feed with the default batch size.
+     */
+    public AlbumChangeFeed(ConnectionProvider connectionProvider, String consumer) {
+        this(connectionProvider, consumer, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates the change log tables and triggers unless they exist, and loads
+     * the saved position of the consumer. A new consumer starts from the current
+     * end of the log, i.e. it only sees changes made after it was created.
+     *
+     * @param connectionProvider the source of the connections.
+     * @param consumer           the name under which the position is saved.
+     * @param batchSize          the maximum number of changes per batch.
+     */
+    public AlbumChangeFeed(ConnectionProvider connectionProvider, String consumer, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+        }
+        this.connectionProvider = connectionProvider;
+        this.consumer = consumer;
+        this.batchSize = batchSize;
+
+        install(connectionProvider);
+        this.position = loadPosition();
+    }
+
+    /**
+     * Creates the change log tables and the triggers on the Album table, unless
+     * they already exist.
+     */
+    public static void install(ConnectionProvider connectionProvider) {
+        try (Connection connection = connectionProvider.getConnection();
+                Statement statement = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.executeUpdate(sql);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long loadPosition() {
+        try (Connection connection = connectionProvider.getConnection()) {
+            try (PreparedStatement statement = connection
+                    .prepareStatement("SELECT Sequence FROM AlbumChangeOffset WHERE Consumer = ?")) {
+                statement.setString(1, consumer);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getLong(1);
+                    }
+                }
+            }
+
+            long end;
+            try (PreparedStatement statement = connection
+                    .prepareStatement("SELECT COALESCE(MAX(Sequence), 0) FROM AlbumChangeLog");
+                    ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                end = resultSet.getLong(1);
+            }
+            savePosition(connection, end);
+            return end;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void savePosition(Connection connection, long sequence) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("""
+                INSERT INTO AlbumChangeOffset (Consumer, Sequence) VALUES (?, ?)
+                ON CONFLICT (Consumer) DO UPDATE SET Sequence = excluded.Sequence""")) {
+            statement.setString(1, consumer);
+            statement.setLong(2, sequence);
+            statement.executeUpdate();
+        }
+    }
+
+    public void addListener(AlbumChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AlbumChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the Sequence of the last change that every listener has processed.
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Reads the next batch of changes and passes it to the listeners. If all of
+     * them succeed, the position is saved after the batch. If one throws, the
+     * position stays where it was and the exception is rethrown.
+     *
+     * @return the number of changes delivered, 0 if there were none.
+     */
+    public synchronized int poll() throws Exception {
+        List<AlbumChange> changes = readChanges();
+        if (changes.isEmpty()) {
+            return 0;
+        }
+
+        for (AlbumChangeListener listener : listeners) {
+            listener.onChanges(changes);
+        }
+
+        long last = changes.get(changes.size() - 1).sequence();
+        try (Connection connection = connectionProvider.getConnection()) {
+            savePosition(connection, last);
+        }
+        position = last;
+        return changes.size();
+    }
+
+    private List<AlbumChange> readChanges() throws SQLException {
+        List<AlbumChange> changes = new ArrayList<>();
+
+        try (Connection connection = connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_CHANGES)) {
+            statement.setLong(1, position);
+            statement.setInt(2, batchSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    changes.add(new AlbumChange(resultSet.getLong(1), AlbumChange.Type.valueOf(resultSet.getString(2)),
+                            resultSet.getLong(3), resultSet.getString(4), resultSet.getLong(5),
+                            resultSet.getLong(6)));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Starts polling on a background thread. When a poll finds a full batch, the
+     * next poll follows right away, otherwise after {@code interval}. Failed
+     * polls are logged and retried after the interval.
+     */
+    public synchronized void start(Duration interval) {
+        if (poller != null) {
+            throw new IllegalStateException("The feed has already been started");
+        }
+        running = true;
+        poller = new Thread(() -> pollLoop(interval.toMillis()), "album-change-feed-" + consumer);
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    private void pollLoop(long intervalMillis) {
+        while (running) {
+            int delivered;
+            try {
+                delivered = poll();
+            } catch (Exception e) {
+                log.log(System.Logger.Level.WARNING, "Delivering album changes failed, retrying", e);
+                delivered = 0;
+            }
+
+            if (delivered < batchSize) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the changes that every consumer has already processed.
+     *
+     * @return the number of deleted changes.
+     */
+    public int pruneConsumed() {
+        try (Connection connection = connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM AlbumChangeLog WHERE Sequence <= (SELECT MIN(Sequence) FROM AlbumChangeOffset)")) {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stops the background polling. The saved position is kept, so a new feed
+     * with the same consumer name continues from it.
+     */
+    @Override
+    public void close() {
+        Thread stopping;
+        synchronized (this) {
+            running = false;
+            stopping = poller;
+            poller = null;
+        }
+        if (stopping != null) {
+            stopping.interrupt();
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package databases.cdc;
+
+import java.util.List;
+
+/**
+ * Receives batches of Album changes from an {@link AlbumChangeFeed}.
+ *
+ * Delivery is at least once: if any listener throws, the same batch is
+ * delivered again on the next poll, also to the listeners that already
+ * processed it. Listeners should therefore be idempotent, e.g. invalidate or
+ * overwrite cache entries rather than count events.
+ */
+@FunctionalInterface
+public interface AlbumChangeListener {
+
+    void onChanges(List<AlbumChange> changes) throws Exception;
+}
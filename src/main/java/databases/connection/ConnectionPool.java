@@ -0,0 +1,508 @@
+package databases.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A small, bounded pool of JDBC connections.
+ *
+ * Opening a connection is expensive compared to running a simple query, so
+ * instead of closing connections after each DAO call, the pool keeps them open
+ * and hands them out again. The connections returned by
+ * {@link #getConnection()} look like ordinary connections: closing one puts it
+ * back into the pool.
+ *
+ * The pool has the following features:
+ *
+ * - at most {@code maxSize} connections are open at the same time
+ *
+ * - a caller waits at most {@code maxWait} for a free connection, after which
+ * an SQLTimeoutException is thrown
+ *
+ * - idle connections are validated before they are handed out, and closed if
+ * they have been unused for longer than {@code idleTimeout}
+ *
+ * - the number of active, idle and waiting callers can be queried at any time
+ *
+ * - each connection keeps an LRU cache of its prepared statements, see
+ * {@link StatementCache}
+ *
+ * Use {@link #shared(String)} to get a single pool per JDBC URL that can be
+ * given to both ArtistDAO and AlbumDAO.
+ */
+public class ConnectionPool implements ConnectionProvider, AutoCloseable {
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final Map<String, ConnectionPool> sharedPools = new ConcurrentHashMap<>();
+
+    private final ConnectionProvider factory;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long idleTimeoutNanos;
+    private final int statementCacheSize;
+
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReturned = lock.newCondition();
+
+    // The most recently returned connection is at the head of the deque
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+
+    private int opened;
+    private int active;
+    private int waiting;
+    private boolean closed;
+
+    /**
+     * Creates a pool with the default settings that opens its connections using
+     * the given JDBC URL.
+     */
+    public ConnectionPool(String connectionString) {
+        this(ConnectionProvider.forUrl(connectionString), DEFAULT_MAX_SIZE, DEFAULT_MAX_WAIT, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Creates a pool with the default settings whose connections are configured
+     * with the given SQLite profile when they are opened.
+     */
+    public ConnectionPool(String connectionString, SqliteProfile profile) {
+        this(profile.connections(connectionString), DEFAULT_MAX_SIZE, DEFAULT_MAX_WAIT, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Creates a new pool with the default statement cache size.
+     */
+    public ConnectionPool(ConnectionProvider factory, int maxSize, Duration maxWait, Duration idleTimeout) {
+        this(factory, maxSize, maxWait, idleTimeout, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param factory            opens the physical connections held by the pool.
+     * @param maxSize            the maximum number of open connections.
+     * @param maxWait            how long getConnection() waits when all
+     *                           connections are in use.
+     * @param idleTimeout        how long an unused connection is kept open.
+     * @param statementCacheSize the number of prepared statements cached per
+     *                           connection, 0 disables the cache.
+     */
+    public ConnectionPool(ConnectionProvider factory, int maxSize, Duration maxWait, Duration idleTimeout,
+            int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("statementCacheSize must not be negative, was " + statementCacheSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Returns the pool shared by all DAOs that use the given JDBC URL. The pool is
+     * created with the default settings on first use. If the shared pool has been
+     * closed, a new one is created.
+     */
+    public static ConnectionPool shared(String connectionString) {
+        return sharedPools.compute(connectionString,
+                (url, pool) -> pool == null || pool.isClosed() ? new ConnectionPool(url) : pool);
+    }
+
+    /**
+     * Borrows a connection from the pool. Close the returned connection to give it
+     * back.
+     *
+     * @throws SQLTimeoutException if no connection became available within the
+     *                             configured maximum wait time.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        while (true) {
+            IdleConnection reused = null;
+            boolean mustOpen = false;
+            List<Connection> expired;
+
+            lock.lock();
+            try {
+                expired = removeExpired();
+
+                while (reused == null && !mustOpen) {
+                    if (closed) {
+                        throw new SQLException("The connection pool has been closed");
+                    }
+                    if (!idle.isEmpty()) {
+                        reused = idle.pollFirst();
+                        active++;
+                    } else if (opened < maxSize) {
+                        opened++;
+                        active++;
+                        mustOpen = true;
+                    } else {
+                        awaitReturn(deadline);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            expired.forEach(ConnectionPool::closeQuietly);
+
+            if (mustOpen) {
+                try {
+                    return wrap(factory.getConnection(), newStatementCache());
+                } catch (SQLException | RuntimeException e) {
+                    discard(null);
+                    throw e;
+                }
+            }
+
+            if (isValid(reused.connection())) {
+                return wrap(reused.connection(), reused.statements());
+            }
+
+            // The connection went stale while it was idle, drop it and try again
+            discard(reused.connection());
+        }
+    }
+
+    /**
+     * Waits until a connection is returned or the deadline passes. Must be called
+     * while holding the lock.
+     */
+    private void awaitReturn(long deadline) throws SQLException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                    + " ms waiting for a connection, all " + maxSize + " connections are in use");
+        }
+
+        waiting++;
+        try {
+            connectionReturned.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * Removes the idle connections that have exceeded the idle timeout. The
+     * removed connections are returned so that they can be closed after the lock
+     * has been released. Must be called while holding the lock.
+     */
+    private List<Connection> removeExpired() {
+        List<Connection> expired = new ArrayList<>();
+        long now = System.nanoTime();
+
+        // The oldest connections are at the tail of the deque
+        Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            IdleConnection candidate = oldestFirst.next();
+            if (now - candidate.returnedAt() < idleTimeoutNanos) {
+                break;
+            }
+            oldestFirst.remove();
+            opened--;
+            expired.add(candidate.connection());
+        }
+        return expired;
+    }
+
+    /**
+     * Closes the idle connections that have not been used within the idle
+     * timeout. This also happens automatically whenever a connection is
+     * borrowed.
+     */
+    public void evictIdleConnections() {
+        List<Connection> expired;
+        lock.lock();
+        try {
+            expired = removeExpired();
+        } finally {
+            lock.unlock();
+        }
+        expired.forEach(ConnectionPool::closeQuietly);
+    }
+
+    /**
+     * Called when a borrowed connection is closed by its user.
+     */
+    private void release(Connection physical, StatementCache statements) {
+        boolean reusable = resetState(physical);
+
+        lock.lock();
+        try {
+            active--;
+            if (reusable && !closed) {
+                idle.addFirst(new IdleConnection(physical, statements, System.nanoTime()));
+                physical = null;
+            } else {
+                opened--;
+            }
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (physical != null) {
+            closeQuietly(physical);
+        }
+    }
+
+    /**
+     * Gives up a borrowed slot without returning a connection to the pool.
+     */
+    private void discard(Connection physical) {
+        lock.lock();
+        try {
+            active--;
+            opened--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (physical != null) {
+            closeQuietly(physical);
+        }
+    }
+
+    /**
+     * Rolls back any transaction the previous user left open, so that the next
+     * user gets the connection in the same state as a freshly opened one.
+     *
+     * @return false if the connection could not be reset and should be closed.
+     */
+    private static boolean resetState(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // The connection is being thrown away, there is nothing else to do
+        }
+    }
+
+    private StatementCache newStatementCache() {
+        if (statementCacheSize == 0) {
+            return null;
+        }
+        return new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses);
+    }
+
+    private Connection wrap(Connection physical, StatementCache statements) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new PooledConnection(physical, statements));
+    }
+
+    /**
+     * Closes all idle connections. Connections that are currently borrowed are
+     * closed when they are returned. Callers waiting for a connection get an
+     * SQLException.
+     */
+    @Override
+    public void close() {
+        List<Connection> toClose = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (IdleConnection entry : idle) {
+                toClose.add(entry.connection());
+            }
+            opened -= idle.size();
+            idle.clear();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(ConnectionPool::closeQuietly);
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of connections currently borrowed from the pool.
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of open connections waiting in the pool to be borrowed.
+     */
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of callers currently blocked in getConnection().
+     */
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return how many times prepareStatement() was served from a statement
+     *         cache.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return how many times prepareStatement() had to prepare a new statement.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool [active=" + getActiveCount() + ", idle=" + getIdleCount() + ", waiting="
+                + getWaitingCount() + ", maxSize=" + maxSize + "]";
+    }
+
+    private record IdleConnection(Connection connection, StatementCache statements, long returnedAt) {
+    }
+
+    /**
+     * Forwards all method calls to the physical connection, except close(), which
+     * returns the connection to the pool, and prepareStatement(String) and
+     * prepareStatement(String, int), which go through the statement cache. After close() the proxy behaves like a closed
+     * connection even though the physical connection stays open.
+     */
+    private class PooledConnection implements InvocationHandler {
+
+        private final Connection physical;
+        private final StatementCache statements;
+        private boolean returned;
+
+        PooledConnection(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(physical, statements);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("The connection has already been returned to the pool");
+            }
+
+            if (statements != null && method.getName().equals("prepareStatement")) {
+                if (args.length == 1) {
+                    return statements.prepare(physical, (Connection) proxy, (String) args[0]);
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return statements.prepare(physical, (Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package databases.connection;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Something that hands out JDBC connections. The DAOs only depend on this
+ * interface, so they work the same way whether the connections come straight
+ * from the DriverManager or from a {@link ConnectionPool}.
+ *
+ * The caller always closes the connection it received. For a pooled
+ * connection, closing it returns it to the pool instead of closing the
+ * database file.
+ */
+@FunctionalInterface
+public interface ConnectionProvider {
+
+    /**
+     * Returns a connection to the database. The caller is responsible for closing
+     * it, preferably with a try-with-resources block.
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Returns a provider that opens a brand new connection for every call using
+     * DriverManager. This is how the DAOs behave when they are created with a
+     * plain connection string.
+     *
+     * @param connectionString, see https://www.baeldung.com/java-jdbc-url-format
+     */
+    static ConnectionProvider forUrl(String connectionString) {
+        return () -> DriverManager.getConnection(connectionString);
+    }
+}
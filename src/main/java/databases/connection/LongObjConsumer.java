@@ -0,0 +1,14 @@
+package databases.connection;
+
+/**
+ * Receives a primitive long and an object, e.g. the id and the name of an
+ * artist. Used to read columns straight from a ResultSet without creating an
+ * object per row, and without boxing the id into a Long.
+ *
+ * @param <T> the type of the object argument.
+ */
+@FunctionalInterface
+public interface LongObjConsumer<T> {
+
+    void accept(long value, T object);
+}
@@ -0,0 +1,124 @@
+package databases.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns a query into a lazily populated Stream. Rows are read from the database
+ * only when the stream asks for them, so a large table never needs to fit in
+ * memory all at once.
+ *
+ * The stream keeps its connection, statement and result set open until the
+ * stream is closed, so it MUST be used in a try-with-resources block:
+ *
+ * <pre>
+ * try (Stream&lt;Artist&gt; artists = artistDAO.streamArtists()) {
+ *     artists.forEach(System.out::println);
+ * }
+ * </pre>
+ */
+public class QueryStreams {
+
+    /**
+     * The default number of rows the driver is asked to fetch at a time.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    private QueryStreams() {
+    }
+
+    /**
+     * Executes the query and returns its rows as a stream. SQLExceptions thrown
+     * while reading the rows are wrapped in RuntimeExceptions, like in the DAOs.
+     *
+     * @param connectionProvider where the connection is borrowed from.
+     * @param sql                the query to execute.
+     * @param binder             sets the query parameters.
+     * @param fetchSize          a hint for how many rows to fetch at a time.
+     * @param mapper             converts each row into an object. It is resolved
+     *                           once against the ResultSet before the first row.
+     */
+    public static <T> Stream<T> stream(ConnectionProvider connectionProvider, String sql, StatementBinder binder,
+            int fetchSize, RowMapper<T> mapper) throws SQLException {
+
+        Connection connection = connectionProvider.getConnection();
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            binder.bind(statement);
+            resultSet = statement.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeAll(resultSet, statement, connection, e);
+            throw e;
+        }
+
+        RowMapper<T> rowMapper;
+        try {
+            rowMapper = mapper.resolve(resultSet);
+        } catch (SQLException | RuntimeException e) {
+            closeAll(resultSet, statement, connection, e);
+            throw e;
+        }
+
+        ResultSet rows = resultSet;
+        PreparedStatement openStatement = statement;
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rows.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.map(rows));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeAll(rows, openStatement, connection, null));
+    }
+
+    /**
+     * Closes the resources in reverse order of opening. If closing fails, the
+     * failure is either attached to the exception that is already being thrown,
+     * or thrown as a RuntimeException.
+     */
+    private static void closeAll(ResultSet resultSet, PreparedStatement statement, Connection connection,
+            Exception primary) {
+        Exception failure = primary;
+
+        for (AutoCloseable resource : new AutoCloseable[] { resultSet, statement, connection }) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (primary == null && failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+}
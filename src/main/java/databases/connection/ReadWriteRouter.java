@@ -0,0 +1,195 @@
+package databases.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends reads and writes to different databases. Writes always go to the
+ * primary. Reads are spread over a set of replica connections in round-robin
+ * order, e.g. several pools opened on the same SQLite file in WAL mode, or
+ * MySQL replicas. Replica connections are made read-only until they are
+ * closed, so a write that reaches one by mistake fails instead of changing a
+ * replica.
+ *
+ * A replica may lag behind the primary, so a read made right after a write
+ * might not see it yet. Wrap such reads in {@link #readYourWrites(Supplier)}
+ * to send them to the primary instead:
+ *
+ * <pre>
+ * albumDAO.addAlbum(album);
+ * List&lt;Album&gt; albums = router.readYourWrites(() -&gt; albumDAO.getAlbumsByArtist(artist));
+ * </pre>
+ *
+ * The setting belongs to the router and to the calling thread. Threads started
+ * inside the call inherit it, so reads of an async DAO submitted inside
+ * readYourWrites() also go to the primary, even if they run after the call has
+ * returned. Threads of a pool that were started before do not.
+ */
+public class ReadWriteRouter {
+
+    /*
+     * Greater than zero while the calling thread is inside readYourWrites() of
+     * this router. A count instead of a boolean makes nested calls work. The
+     * values are immutable, so a thread started inside the call keeps the value
+     * it inherited when the call returns.
+     */
+    private final InheritableThreadLocal<Integer> primaryReads = new InheritableThreadLocal<>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    private final ConnectionProvider primary;
+    private final List<ConnectionProvider> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param primary  the database that receives all writes.
+     * @param replicas the databases that serve reads. If the list is empty, reads
+     *                 go to the primary.
+     */
+    public ReadWriteRouter(ConnectionProvider primary, List<ConnectionProvider> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    /**
+     * @return a provider for write connections, always the primary.
+     */
+    public ConnectionProvider writes() {
+        return primary;
+    }
+
+    /**
+     * @return a provider for read connections. Each connection comes from the
+     *         next replica in turn, or from the primary inside
+     *         readYourWrites().
+     */
+    public ConnectionProvider reads() {
+        return this::getReadConnection;
+    }
+
+    private Connection getReadConnection() throws SQLException {
+        if (replicas.isEmpty() || primaryReads.get() > 0) {
+            return primary.getConnection();
+        }
+        int index = Math.floorMod(next.getAndIncrement(), replicas.size());
+        return readOnly(replicas.get(index).getConnection());
+    }
+
+    /**
+     * Makes the connection read-only until it is closed. The replica provider
+     * may be a pool that also hands the same connections to writers, so closing
+     * the returned connection makes it writable again before it goes back.
+     */
+    private static Connection readOnly(Connection connection) throws SQLException {
+        boolean sqlite;
+        try {
+            sqlite = "SQLite".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            setReadOnly(connection, sqlite, true);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(
+                ReadWriteRouter.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ReadOnlyConnection(connection, sqlite));
+    }
+
+    private static void setReadOnly(Connection connection, boolean sqlite, boolean readOnly) throws SQLException {
+        if (sqlite) {
+            // The SQLite driver only accepts setReadOnly() before the connection is
+            // opened, but query_only makes every write fail in the same way
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(readOnly ? "PRAGMA query_only = ON" : "PRAGMA query_only = OFF");
+            }
+        } else {
+            connection.setReadOnly(readOnly);
+        }
+    }
+
+    /**
+     * Forwards all method calls to the replica connection, except close(), which
+     * first turns the read-only mode off again.
+     */
+    private static class ReadOnlyConnection implements InvocationHandler {
+
+        private final Connection connection;
+        private final boolean sqlite;
+        private boolean closed;
+
+        ReadOnlyConnection(Connection connection, boolean sqlite) {
+            this.connection = connection;
+            this.sqlite = sqlite;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        close();
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ReadOnly" + connection;
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void close() throws SQLException {
+            try {
+                if (!connection.isClosed()) {
+                    setReadOnly(connection, sqlite, false);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Still read-only, so it must not be reused. A pool drops a connection
+                // that has been aborted when it is returned.
+                connection.abort(Runnable::run);
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Runs the given DAO call so that its reads from this router go to the
+     * primary, and therefore see all writes that have been committed before the
+     * call.
+     */
+    public <T> T readYourWrites(Supplier<T> call) {
+        int depth = primaryReads.get();
+        primaryReads.set(depth + 1);
+        try {
+            return call.get();
+        } finally {
+            if (depth == 0) {
+                primaryReads.remove();
+            } else {
+                primaryReads.set(depth);
+            }
+        }
+    }
+}
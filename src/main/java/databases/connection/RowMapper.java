@@ -0,0 +1,29 @@
+package databases.connection;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converts the current row of a ResultSet into an object, for example an
+ * Artist. The mapper must not move the cursor, i.e. call next().
+ *
+ * Reading a column by name makes the driver look the name up for every row.
+ * A mapper can avoid that by overriding {@link #resolve(ResultSet)}: it is
+ * called once per ResultSet before the first row, and may return a mapper that
+ * reads the columns by their index instead.
+ *
+ * @param <T> the type of the objects created from the rows.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(ResultSet resultSet) throws SQLException;
+
+    /**
+     * Returns the mapper to use for the rows of the given ResultSet. The default
+     * implementation returns this mapper.
+     */
+    default RowMapper<T> resolve(ResultSet resultSet) throws SQLException {
+        return this;
+    }
+}
@@ -0,0 +1,20 @@
+package databases.connection;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets the parameters of a prepared statement, e.g.
+ * {@code statement -> statement.setLong(1, artist.getId())}.
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+    /**
+     * A binder for queries without parameters.
+     */
+    StatementBinder NONE = statement -> {
+    };
+
+    void bind(PreparedStatement statement) throws SQLException;
+}
@@ -0,0 +1,231 @@
+package databases.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least-recently-used cache of prepared statements for one physical
+ * connection, keyed by the SQL text and whether the statement returns
+ * generated keys. This covers prepareStatement(String) and
+ * prepareStatement(String, int), which the DAOs use for their inserts. Other
+ * overloads, e.g. with column names or result set types, are not cached.
+ *
+ * Preparing a statement makes the database parse and plan the SQL. The DAOs
+ * send the same few SQL strings over and over, so keeping the prepared
+ * statements around lets repeated calls skip that work. The statements handed
+ * out by the cache look like ordinary statements: closing one closes its
+ * result sets, clears its parameters and batch, and puts it back into the
+ * cache, so nothing left behind by one caller reaches the next.
+ *
+ * A connection is only used by one thread at a time, so the cache is not
+ * thread-safe. The hit and miss counters are shared by all caches of a pool.
+ */
+class StatementCache {
+
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<StatementKey, CachedStatement> statements;
+
+    StatementCache(int maxSize, LongAdder hits, LongAdder misses) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+
+        // Access order makes the map iterate from the least recently used entry
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Same as prepare(Connection, Connection, String, int) for a statement that
+     * does not return generated keys.
+     */
+    PreparedStatement prepare(Connection physical, Connection owner, String sql) throws SQLException {
+        return prepare(physical, owner, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, reusing a cached one when
+     * possible.
+     *
+     * @param physical          the connection that owns the cached statements.
+     * @param owner             the connection returned from
+     *                          statement.getConnection(), i.e. the pooled
+     *                          connection seen by the caller.
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or
+     *                          Statement.NO_GENERATED_KEYS.
+     */
+    PreparedStatement prepare(Connection physical, Connection owner, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        StatementKey key = new StatementKey(sql, autoGeneratedKeys);
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.evicted) {
+            // The statement could not be reset when it was released
+            statements.remove(key);
+            cached = null;
+        }
+
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+        } else if (cached != null) {
+            // The same SQL is already open on this connection, e.g. in a nested
+            // loop. Hand out a separate statement that is closed normally.
+            misses.increment();
+            return key.prepare(physical);
+        } else {
+            misses.increment();
+            cached = new CachedStatement(key.prepare(physical));
+            statements.put(key, cached);
+        }
+
+        cached.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new StatementHandle(cached, owner));
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private record StatementKey(String sql, int autoGeneratedKeys) {
+
+        PreparedStatement prepare(Connection physical) throws SQLException {
+            return autoGeneratedKeys == Statement.NO_GENERATED_KEYS ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+    }
+
+    private static class CachedStatement {
+
+        private final PreparedStatement statement;
+        private final List<ResultSet> results = new ArrayList<>();
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        /**
+         * Called when a handle to this statement is closed by the caller.
+         */
+        void release() {
+            inUse = false;
+            try {
+                if (evicted) {
+                    statement.close();
+                } else {
+                    for (ResultSet resultSet : results) {
+                        resultSet.close();
+                    }
+                    statement.clearBatch();
+                    statement.clearParameters();
+                }
+            } catch (SQLException e) {
+                evicted = true;
+                closeQuietly();
+            } finally {
+                results.clear();
+            }
+        }
+
+        /**
+         * Called when this statement is pushed out of the cache. A statement that is
+         * still in use is closed when it is released.
+         */
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // The statement is being thrown away, there is nothing else to do
+            }
+        }
+    }
+
+    /**
+     * The caller's view of a cached statement. Each call to prepare() creates a
+     * new handle, so closing a handle twice, or using it after close(), does not
+     * affect the next user of the same cached statement.
+     */
+    private static class StatementHandle implements InvocationHandler {
+
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean closed;
+
+        StatementHandle(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("The statement has already been closed");
+            }
+
+            try {
+                Object result = method.invoke(cached.statement, args);
+                // The SQLite driver refuses to return the current result set a
+                // second time, so release() can not ask for it and closes these
+                if (result instanceof ResultSet resultSet) {
+                    cached.results.add(resultSet);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package databases.dump;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Builds a database from the Chinook MySQL dump.
+ *
+ * Usage: DumpImportMain [jdbc-url] [dump-file]
+ *
+ * By default the dump data/Chinook_MySql_AutoIncrementPKs.sql is imported
+ * into a new SQLite database data/Chinook_Imported.sqlite. To load it into the
+ * MySQL database of data/docker-compose.yml instead, give its JDBC URL, for
+ * example jdbc:mysql://localhost:3306/Chinook?user=root&password=...
+ */
+public class DumpImportMain {
+
+    private static final String DEFAULT_JDBC_URL = "jdbc:sqlite:data/Chinook_Imported.sqlite";
+    private static final String DEFAULT_DUMP = "data/Chinook_MySql_AutoIncrementPKs.sql";
+
+    public static void main(String[] args) throws IOException {
+        String url = args.length > 0 ? args[0] : DEFAULT_JDBC_URL;
+        Path dump = Path.of(args.length > 1 ? args[1] : DEFAULT_DUMP);
+
+        DumpImporter importer = new DumpImporter(ConnectionProvider.forUrl(url));
+        DumpImporter.Progress result = importer.importDump(dump, progress -> System.out.printf(
+                "\r%5.1f %% %8d rows %10.0f rows/s", progress.percentDone(), progress.rows(),
+                progress.rowsPerSecond()));
+
+        System.out.printf("%nImported %d statements and %d rows in %d ms, %.0f rows/s%n", result.statements(),
+                result.rows(), result.elapsed().toMillis(), result.rowsPerSecond());
+    }
+}
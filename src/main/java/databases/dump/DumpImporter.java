@@ -0,0 +1,308 @@
+package databases.dump;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Loads an SQL dump written for MySQL, such as
+ * data/Chinook_MySql_AutoIncrementPKs.sql, into a MySQL or SQLite database.
+ *
+ * The dump is read through a file channel and split into statements as it is
+ * read, so the whole file is never in memory. The INSERT statements are not
+ * sent to the database one by one: their values are parsed and added to a
+ * batch of a prepared statement, which is executed when it is full or when the
+ * next statement goes to another table. The indexes and foreign keys of the
+ * dump are created only after all rows have been loaded, because building an
+ * index once is much faster than updating it on every insert.
+ *
+ * The import runs in one transaction, but only SQLite makes it atomic. SQLite
+ * has transactional DDL, so a failed import leaves the database as it was.
+ * MySQL commits the open transaction implicitly before and after every DDL
+ * statement of the dump: DROP DATABASE, CREATE DATABASE, CREATE TABLE and
+ * ALTER TABLE. There, only the rows inserted since the last DDL statement are
+ * rolled back. A failed import can leave a partly built database, which has to
+ * be dropped or imported again.
+ *
+ * For SQLite the MySQL specific parts of the dump are converted:
+ * - the backticks around names are removed
+ * - INT columns become INTEGER, so that INT PRIMARY KEY columns become aliases
+ * of the rowid, and AUTO_INCREMENT is dropped
+ * - an existing table is dropped before it is created again, like the dump does
+ * with DROP DATABASE
+ * - DROP DATABASE, CREATE DATABASE and USE are skipped
+ * - ALTER TABLE ... ADD CONSTRAINT is skipped, because SQLite can not add
+ * constraints to an existing table
+ */
+public class DumpImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final Pattern CREATE_TABLE = Pattern
+            .compile("CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    private static final System.Logger log = System.getLogger(DumpImporter.class.getName());
+
+    /**
+     * The state of an import.
+     *
+     * @param statements the number of statements read from the dump.
+     * @param rows       the number of rows inserted.
+     * @param bytesRead  how far the dump has been read.
+     * @param totalBytes the size of the dump.
+     * @param elapsed    the time since the import started.
+     */
+    public record Progress(long statements, long rows, long bytesRead, long totalBytes, Duration elapsed) {
+
+        public double rowsPerSecond() {
+            double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+            return rows / seconds;
+        }
+
+        public double percentDone() {
+            return totalBytes == 0 ? 100 : 100.0 * bytesRead / totalBytes;
+        }
+    }
+
+    private final ConnectionProvider connectionProvider;
+    private final int batchSize;
+
+    /**
+     * Creates an importer with the default batch size.
+     */
+    public DumpImporter(ConnectionProvider connectionProvider) {
+        this(connectionProvider, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param connectionProvider the source of the connection to the target database.
+     * @param batchSize          the number of rows sent to the database at a time.
+     */
+    public DumpImporter(ConnectionProvider connectionProvider, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+        }
+        this.connectionProvider = connectionProvider;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports the dump without reporting progress.
+     */
+    public Progress importDump(Path dump) throws IOException {
+        return importDump(dump, progress -> {
+        });
+    }
+
+    /**
+     * Imports the dump. If anything fails, the transaction is rolled back. On
+     * SQLite this undoes the whole import. On MySQL it only undoes the work done
+     * since the last DDL statement, because DDL statements commit implicitly.
+     *
+     * @param dump     the SQL file to import.
+     * @param listener called after every executed batch of rows.
+     * @return the final progress, i.e. the totals of the import.
+     */
+    public Progress importDump(Path dump, Consumer<Progress> listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(dump, StandardOpenOption.READ);
+                SqlStatementReader reader = new SqlStatementReader(
+                        Channels.newReader(channel, StandardCharsets.UTF_8));
+                Connection connection = connectionProvider.getConnection()) {
+
+            boolean sqlite = "SQLite".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            Load load = new Load(connection, sqlite, channel, listener);
+
+            connection.setAutoCommit(false);
+            try {
+                String sql;
+                while ((sql = reader.next()) != null) {
+                    load.execute(sql);
+                }
+                load.finish();
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return load.progress();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The state of a single import.
+     */
+    private class Load {
+
+        private final Connection connection;
+        private final boolean sqlite;
+        private final FileChannel channel;
+        private final long totalBytes;
+        private final Consumer<Progress> listener;
+        private final long start = System.nanoTime();
+
+        private final List<String> deferred = new ArrayList<>();
+        private String batchSql;
+        private PreparedStatement batch;
+        private int batchRows;
+
+        private long statements;
+        private long rows;
+
+        Load(Connection connection, boolean sqlite, FileChannel channel, Consumer<Progress> listener)
+                throws IOException {
+            this.connection = connection;
+            this.sqlite = sqlite;
+            this.channel = channel;
+            this.totalBytes = channel.size();
+            this.listener = listener;
+        }
+
+        void execute(String sql) throws SQLException, IOException {
+            statements++;
+
+            InsertStatement insert = InsertStatement.parse(sql);
+            if (insert != null) {
+                insert(insert);
+                return;
+            }
+
+            flush();
+            String upper = sql.toUpperCase(Locale.ROOT);
+            if (upper.startsWith("CREATE INDEX") || upper.startsWith("CREATE UNIQUE INDEX")) {
+                deferred.add(sqlite ? removeBackticks(sql) : sql);
+            } else if (upper.startsWith("ALTER TABLE") && upper.contains(" ADD CONSTRAINT ")) {
+                if (sqlite) {
+                    log.log(System.Logger.Level.DEBUG, "Skipping a statement SQLite does not support: {0}", sql);
+                } else {
+                    deferred.add(sql);
+                }
+            } else if (sqlite && (upper.startsWith("DROP DATABASE") || upper.startsWith("CREATE DATABASE")
+                    || upper.startsWith("USE "))) {
+                log.log(System.Logger.Level.DEBUG, "Skipping a statement SQLite does not need: {0}", sql);
+            } else if (sqlite && upper.startsWith("CREATE TABLE")) {
+                executeUpdate("DROP TABLE IF EXISTS " + tableOfCreate(sql));
+                executeUpdate(toSqliteTable(sql));
+            } else {
+                executeUpdate(sqlite ? removeBackticks(sql) : sql);
+            }
+        }
+
+        private void insert(InsertStatement insert) throws SQLException, IOException {
+            String sql = insert.toPreparedSql();
+            if (!sql.equals(batchSql)) {
+                flush();
+                batch = connection.prepareStatement(sql);
+                batchSql = sql;
+            }
+
+            for (List<Object> row : insert.rows()) {
+                for (int i = 0; i < row.size(); i++) {
+                    bind(batch, i + 1, row.get(i));
+                }
+                batch.addBatch();
+                if (++batchRows == batchSize) {
+                    executeBatch();
+                }
+            }
+        }
+
+        private void executeBatch() throws SQLException, IOException {
+            if (batchRows == 0) {
+                return;
+            }
+            batch.executeBatch();
+            rows += batchRows;
+            batchRows = 0;
+            listener.accept(progress());
+        }
+
+        /**
+         * Executes the rows waiting in the batch and closes its statement.
+         */
+        private void flush() throws SQLException, IOException {
+            if (batch != null) {
+                executeBatch();
+                batch.close();
+                batch = null;
+                batchSql = null;
+            }
+        }
+
+        private void executeUpdate(String sql) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(sql);
+            }
+        }
+
+        /**
+         * Loads the last batch and creates the deferred indexes and constraints.
+         */
+        void finish() throws SQLException, IOException {
+            flush();
+            for (String sql : deferred) {
+                executeUpdate(sql);
+            }
+        }
+
+        Progress progress() throws IOException {
+            // The reader is ahead of the statements by at most its buffer
+            return new Progress(statements, rows, channel.position(), totalBytes,
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private static void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.NULL);
+        } else if (value instanceof Long number) {
+            statement.setLong(index, number);
+        } else if (value instanceof BigDecimal number) {
+            statement.setBigDecimal(index, number);
+        } else {
+            statement.setString(index, (String) value);
+        }
+    }
+
+    private static String removeBackticks(String sql) {
+        return sql.replace("`", "");
+    }
+
+    private static String tableOfCreate(String sql) {
+        Matcher matcher = CREATE_TABLE.matcher(sql);
+        if (!matcher.lookingAt()) {
+            throw new IllegalArgumentException("Unexpected CREATE TABLE statement: " + sql);
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * Converts a MySQL CREATE TABLE statement for SQLite.
+     */
+    static String toSqliteTable(String sql) {
+        return removeBackticks(sql)
+                .replaceAll("\\bAUTO_INCREMENT\\b", "")
+                .replaceAll("\\bINT\\b", "INTEGER");
+    }
+}
@@ -0,0 +1,216 @@
+package databases.dump;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An INSERT statement of a MySQL dump taken apart into the table, the columns
+ * and the literal values, so that the rows can be inserted with a prepared
+ * statement instead of parsing the SQL of every row in the database.
+ *
+ * Only the form used in dumps is understood:
+ * INSERT INTO table (column, ...) VALUES (value, ...), (value, ...)
+ * where the values are strings, numbers or NULL.
+ */
+record InsertStatement(String table, List<String> columns, List<List<Object>> rows) {
+
+    /**
+     * @return the INSERT statement with a parameter for every column.
+     */
+    String toPreparedSql() {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+    }
+
+    /**
+     * @return the parsed statement, or null if the statement is not an INSERT
+     *         of literal values.
+     */
+    static InsertStatement parse(String sql) {
+        Parser parser = new Parser(sql);
+        if (!parser.keyword("INSERT") || !parser.keyword("INTO")) {
+            return null;
+        }
+        String table = parser.identifier();
+        if (table == null || !parser.symbol('(')) {
+            return null;
+        }
+
+        List<String> columns = new ArrayList<>();
+        do {
+            String column = parser.identifier();
+            if (column == null) {
+                return null;
+            }
+            columns.add(column);
+        } while (parser.symbol(','));
+
+        if (!parser.symbol(')') || !parser.keyword("VALUES")) {
+            return null;
+        }
+
+        List<List<Object>> rows = new ArrayList<>();
+        do {
+            if (!parser.symbol('(')) {
+                return null;
+            }
+            List<Object> row = new ArrayList<>(columns.size());
+            do {
+                if (!parser.literal(row)) {
+                    return null;
+                }
+            } while (parser.symbol(','));
+
+            if (!parser.symbol(')') || row.size() != columns.size()) {
+                return null;
+            }
+            rows.add(row);
+        } while (parser.symbol(','));
+
+        return parser.atEnd() ? new InsertStatement(table, columns, rows) : null;
+    }
+
+    private static class Parser {
+
+        private final String sql;
+        private int position;
+
+        Parser(String sql) {
+            this.sql = sql;
+        }
+
+        private void skipWhitespace() {
+            while (position < sql.length() && Character.isWhitespace(sql.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean atEnd() {
+            skipWhitespace();
+            return position == sql.length();
+        }
+
+        boolean symbol(char symbol) {
+            skipWhitespace();
+            if (position < sql.length() && sql.charAt(position) == symbol) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean keyword(String keyword) {
+            skipWhitespace();
+            int end = position + keyword.length();
+            if (sql.regionMatches(true, position, keyword, 0, keyword.length())
+                    && (end == sql.length() || !Character.isLetterOrDigit(sql.charAt(end)))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the identifier without the backticks, or null if there is none.
+         */
+        String identifier() {
+            skipWhitespace();
+            if (symbol('`')) {
+                int end = sql.indexOf('`', position);
+                if (end < 0) {
+                    return null;
+                }
+                String identifier = sql.substring(position, end);
+                position = end + 1;
+                return identifier;
+            }
+
+            int start = position;
+            while (position < sql.length()
+                    && (Character.isLetterOrDigit(sql.charAt(position)) || sql.charAt(position) == '_')) {
+                position++;
+            }
+            return position > start ? sql.substring(start, position) : null;
+        }
+
+        /**
+         * Parses a string, a number or NULL and adds its value to the row.
+         */
+        boolean literal(List<Object> row) {
+            skipWhitespace();
+            if (keyword("NULL")) {
+                row.add(null);
+                return true;
+            }
+
+            // N'...' is a string in the national character set, which is UTF-8 here
+            if (sql.startsWith("N'", position) || sql.startsWith("n'", position)) {
+                position++;
+            }
+            if (position < sql.length() && sql.charAt(position) == '\'') {
+                String value = string();
+                if (value == null) {
+                    return false;
+                }
+                row.add(value);
+                return true;
+            }
+
+            int start = position;
+            while (position < sql.length() && "+-.0123456789eE".indexOf(sql.charAt(position)) >= 0) {
+                position++;
+            }
+            if (position == start) {
+                return false;
+            }
+            String number = sql.substring(start, position);
+            try {
+                if (number.matches("[+-]?\\d+") && number.length() < 19) {
+                    row.add(Long.parseLong(number));
+                } else {
+                    row.add(new BigDecimal(number));
+                }
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Reads a quoted string and resolves the escapes the way MySQL does.
+         */
+        private String string() {
+            StringBuilder value = new StringBuilder();
+            position++;
+
+            while (position < sql.length()) {
+                char c = sql.charAt(position++);
+                if (c == '\'') {
+                    if (position < sql.length() && sql.charAt(position) == '\'') {
+                        value.append('\'');
+                        position++;
+                    } else {
+                        return value.toString();
+                    }
+                } else if (c == '\\' && position < sql.length()) {
+                    char escaped = sql.charAt(position++);
+                    switch (escaped) {
+                        case '0' -> value.append('\0');
+                        case 'b' -> value.append('\b');
+                        case 'n' -> value.append('\n');
+                        case 'r' -> value.append('\r');
+                        case 't' -> value.append('\t');
+                        case 'Z' -> value.append('\u001A');
+                        // \% and \_ keep the backslash, because they are meant for LIKE patterns
+                        case '%', '_' -> value.append('\\').append(escaped);
+                        default -> value.append(escaped);
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            return null;
+        }
+    }
+}
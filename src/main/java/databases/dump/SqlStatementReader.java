@@ -0,0 +1,143 @@
+package databases.dump;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits an SQL script into statements while reading it, so that only the
+ * statement being read is kept in memory.
+ *
+ * A statement ends at a semicolon that is not inside a string or a quoted
+ * identifier. Comments are removed:
+ * - from "--" or "#" to the end of the line
+ * - between "/*" and "*&#47;"
+ *
+ * Strings and identifiers may be quoted with ', " or `. Inside them a quote
+ * character can be escaped by doubling it or, in strings, with a backslash as
+ * in MySQL. The text inside quotes is returned exactly as written.
+ */
+public class SqlStatementReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean started;
+
+    public SqlStatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next statement without the terminating semicolon and the
+     *         surrounding whitespace, or null at the end of the script.
+     */
+    public String next() throws IOException {
+        StringBuilder statement = new StringBuilder();
+        int c;
+
+        while ((c = read()) != -1) {
+            if (c == '\'' || c == '"' || c == '`') {
+                readQuoted((char) c, statement);
+            } else if (c == '-' && peek() == '-' || c == '#') {
+                skipLine();
+            } else if (c == '/' && peek() == '*') {
+                read();
+                skipBlockComment();
+                statement.append(' ');
+            } else if (c == ';') {
+                String sql = statement.toString().strip();
+                if (!sql.isEmpty()) {
+                    return sql;
+                }
+                statement.setLength(0);
+            } else {
+                statement.append((char) c);
+            }
+        }
+
+        String sql = statement.toString().strip();
+        return sql.isEmpty() ? null : sql;
+    }
+
+    private void readQuoted(char quote, StringBuilder statement) throws IOException {
+        statement.append(quote);
+        int c;
+        while ((c = read()) != -1) {
+            statement.append((char) c);
+
+            if (c == '\\' && quote != '`') {
+                int escaped = read();
+                if (escaped != -1) {
+                    statement.append((char) escaped);
+                }
+            } else if (c == quote) {
+                if (peek() != quote) {
+                    return;
+                }
+                statement.append((char) read());
+            }
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '*' && peek() == '/') {
+                read();
+                return;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            position++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+
+        if (count < 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+
+        // Files saved by some Windows editors start with a byte order mark
+        if (!started) {
+            started = true;
+            if (buffer[0] == '\uFEFF') {
+                position = 1;
+                return limit > 1 || fill();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
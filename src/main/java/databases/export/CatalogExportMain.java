@@ -0,0 +1,39 @@
+package databases.export;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import databases.connection.ConnectionPool;
+
+/**
+ * Exports all artists and their albums from the Chinook database.
+ *
+ * Usage: CatalogExportMain output-file [ndjson|csv] [partitions] [gzip]
+ *
+ * For example: CatalogExportMain build/catalog.ndjson.gz ndjson 8 gzip
+ */
+public class CatalogExportMain {
+
+    private static final String JDBC_URL = "jdbc:sqlite:data/Chinook_Sqlite.sqlite";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CatalogExportMain output-file [ndjson|csv] [partitions] [gzip]");
+            System.exit(1);
+        }
+
+        Path output = Path.of(args[0]);
+        CatalogExporter.Format format = args.length > 1 ? CatalogExporter.Format.valueOf(args[1].toUpperCase())
+                : CatalogExporter.Format.NDJSON;
+        int partitions = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        boolean gzip = args.length > 3 && args[3].equalsIgnoreCase("gzip");
+
+        try (ConnectionPool pool = new ConnectionPool(JDBC_URL)) {
+            CatalogExporter.Result result = new CatalogExporter(pool, partitions).export(output, format, gzip);
+
+            System.out.printf("Exported %d artists and %d albums (%d bytes) in %d ms, %.0f rows/s%n",
+                    result.artists(), result.albums(), result.bytes(), result.elapsed().toMillis(),
+                    result.rowsPerSecond());
+        }
+    }
+}
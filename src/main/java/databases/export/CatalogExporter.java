@@ -0,0 +1,440 @@
+package databases.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import databases.connection.ConnectionProvider;
+import databases.connection.QueryStreams;
+
+/**
+ * Exports every artist with their albums into a file, reading several parts of
+ * the Artist table in parallel.
+ *
+ * The ArtistId range is split into partitions with about the same number of
+ * artists each. Every partition is read on its own virtual thread with its own
+ * connection, and written into its own temporary file. When all partitions are
+ * done, the temporary files are appended to the output in partition order.
+ * The output is therefore always ordered by ArtistId and AlbumId, no matter
+ * which partition finishes first.
+ *
+ * With gzip enabled, each partition is compressed separately. A gzip file may
+ * consist of several compressed members one after another, so the result is
+ * still an ordinary gzip file.
+ */
+public class CatalogExporter {
+
+    public enum Format {
+        /**
+         * One JSON object per artist and line, with the albums in an array.
+         */
+        NDJSON,
+
+        /**
+         * One line per album with the columns ArtistId, Name, AlbumId and Title.
+         * Artists without albums have one line with empty album columns.
+         */
+        CSV
+    }
+
+    /**
+     * The outcome of an export.
+     *
+     * @param artists the number of exported artists.
+     * @param albums  the number of exported albums.
+     * @param bytes   the size of the output file.
+     * @param elapsed how long the export took.
+     */
+    public record Result(long artists, long albums, long bytes, Duration elapsed) {
+
+        /**
+         * @return the number of exported database rows, artists and albums, per
+         *         second.
+         */
+        public double rowsPerSecond() {
+            double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+            return (artists + albums) / seconds;
+        }
+    }
+
+    private static final String SELECT_PARTITION = """
+            SELECT Artist.ArtistId, Artist.Name, Album.AlbumId, Album.Title
+            FROM Artist LEFT JOIN Album ON Album.ArtistId = Artist.ArtistId
+            WHERE Artist.ArtistId >= ? AND Artist.ArtistId < ?
+            ORDER BY Artist.ArtistId ASC, Album.AlbumId ASC""";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ConnectionProvider connectionProvider;
+    private final int partitions;
+
+    /**
+     * @param connectionProvider the source of the read connections. Each
+     *                           partition borrows its own connection, so a pool
+     *                           or a ReadWriteRouter's reads() with room for
+     *                           {@code partitions} connections works best.
+     * @param partitions         how many parts of the table are read in
+     *                           parallel.
+     */
+    public CatalogExporter(ConnectionProvider connectionProvider, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be at least 1, was " + partitions);
+        }
+        this.connectionProvider = connectionProvider;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Exports the catalogue into the given file, replacing it if it exists.
+     *
+     * @param output where to write.
+     * @param format NDJSON or CSV.
+     * @param gzip   whether to compress the output.
+     */
+    public Result export(Path output, Format format, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        List<long[]> ranges = partitionRanges();
+
+        List<Path> parts = new ArrayList<>();
+        List<Future<long[]>> counts = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                Path part = output.resolveSibling(output.getFileName() + ".part" + i);
+                long[] range = ranges.get(i);
+                parts.add(part);
+                counts.add(executor.submit(() -> exportPartition(range[0], range[1], part, format, gzip)));
+            }
+        }
+
+        long artists = 0;
+        long albums = 0;
+        try {
+            for (Future<long[]> count : counts) {
+                artists += count.get()[0];
+                albums += count.get()[1];
+            }
+
+            try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (format == Format.CSV) {
+                    writeHeader(target, gzip);
+                }
+                for (Path part : parts) {
+                    append(part, target);
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The export was interrupted", e);
+        } finally {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+
+        return new Result(artists, albums, Files.size(output), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Splits the ArtistIds into ranges [from, to) with about the same number of
+     * artists in each.
+     */
+    private List<long[]> partitionRanges() {
+        List<long[]> ranges = new ArrayList<>();
+
+        try (Connection connection = connectionProvider.getConnection()) {
+            long count;
+            try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM Artist");
+                    ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                count = resultSet.getLong(1);
+            }
+
+            // The first ArtistId of every partition after the first one
+            List<Long> boundaries = new ArrayList<>();
+            try (PreparedStatement statement = connection
+                    .prepareStatement("SELECT ArtistId FROM Artist ORDER BY ArtistId ASC LIMIT 1 OFFSET ?")) {
+                for (int i = 1; i < partitions; i++) {
+                    statement.setLong(1, count * i / partitions);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (resultSet.next()) {
+                            long boundary = resultSet.getLong(1);
+                            if (boundaries.isEmpty() || boundaries.get(boundaries.size() - 1) < boundary) {
+                                boundaries.add(boundary);
+                            }
+                        }
+                    }
+                }
+            }
+
+            long from = Long.MIN_VALUE;
+            for (long boundary : boundaries) {
+                ranges.add(new long[] { from, boundary });
+                from = boundary;
+            }
+            ranges.add(new long[] { from, Long.MAX_VALUE });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return ranges;
+    }
+
+    /**
+     * Writes the artists of one ArtistId range into the given file.
+     *
+     * @return the number of artists and albums written.
+     */
+    private long[] exportPartition(long from, long to, Path part, Format format, boolean gzip) throws IOException {
+        long artists = 0;
+        long albums = 0;
+
+        try (Writer writer = open(part, gzip);
+                Connection connection = connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_PARTITION)) {
+
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+            statement.setLong(1, from);
+            statement.setLong(2, to);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                RowWriter rows = format == Format.NDJSON ? new NdjsonWriter(writer) : new CsvWriter(writer);
+                long currentArtist = 0;
+                boolean first = true;
+
+                while (resultSet.next()) {
+                    long artistId = resultSet.getLong(1);
+                    if (first || artistId != currentArtist) {
+                        rows.endArtist();
+                        rows.startArtist(artistId, resultSet.getString(2));
+                        currentArtist = artistId;
+                        first = false;
+                        artists++;
+                    }
+
+                    long albumId = resultSet.getLong(3);
+                    if (!resultSet.wasNull()) {
+                        rows.album(albumId, resultSet.getString(4));
+                        albums++;
+                    }
+                }
+                rows.endArtist();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return new long[] { artists, albums };
+    }
+
+    private static Writer open(Path path, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)),
+                BUFFER_SIZE);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    private static void writeHeader(FileChannel target, boolean gzip) throws IOException {
+        // Not closed, closing the writer would close the target channel too
+        OutputStream out = Channels.newOutputStream(target);
+        if (gzip) {
+            GZIPOutputStream compressed = new GZIPOutputStream(out);
+            compressed.write(CsvWriter.HEADER.getBytes(StandardCharsets.UTF_8));
+            compressed.finish();
+        } else {
+            out.write(CsvWriter.HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Appends the whole file to the target. transferTo() lets the operating
+     * system copy the bytes without passing them through the Java heap.
+     */
+    private static void append(Path part, FileChannel target) throws IOException {
+        try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    /**
+     * Formats the rows of one partition. The rows of an artist arrive together,
+     * so the writer only needs to remember the current artist.
+     */
+    private interface RowWriter {
+
+        void startArtist(long artistId, String name) throws IOException;
+
+        void album(long albumId, String title) throws IOException;
+
+        /**
+         * Called before every artist and after the last one. Does nothing if no
+         * artist has been started.
+         */
+        void endArtist() throws IOException;
+    }
+
+    private static class NdjsonWriter implements RowWriter {
+
+        private final Writer writer;
+        private boolean open;
+        private boolean firstAlbum;
+
+        NdjsonWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void startArtist(long artistId, String name) throws IOException {
+            writer.write("{\"artistId\":");
+            writer.write(Long.toString(artistId));
+            writer.write(",\"name\":");
+            writeString(name);
+            writer.write(",\"albums\":[");
+            open = true;
+            firstAlbum = true;
+        }
+
+        @Override
+        public void album(long albumId, String title) throws IOException {
+            if (!firstAlbum) {
+                writer.write(',');
+            }
+            firstAlbum = false;
+            writer.write("{\"albumId\":");
+            writer.write(Long.toString(albumId));
+            writer.write(",\"title\":");
+            writeString(title);
+            writer.write('}');
+        }
+
+        @Override
+        public void endArtist() throws IOException {
+            if (open) {
+                writer.write("]}\n");
+                open = false;
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writer.write("null");
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> writer.write("\\\"");
+                    case '\\' -> writer.write("\\\\");
+                    case '\n' -> writer.write("\\n");
+                    case '\r' -> writer.write("\\r");
+                    case '\t' -> writer.write("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                    }
+                }
+            }
+            writer.write('"');
+        }
+    }
+
+    private static class CsvWriter implements RowWriter {
+
+        static final String HEADER = "ArtistId,Name,AlbumId,Title\n";
+
+        private final Writer writer;
+        private long artistId;
+        private String name;
+        private boolean hasAlbums;
+        private boolean open;
+
+        CsvWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void startArtist(long artistId, String name) {
+            this.artistId = artistId;
+            this.name = name;
+            this.hasAlbums = false;
+            this.open = true;
+        }
+
+        @Override
+        public void album(long albumId, String title) throws IOException {
+            writeLine(Long.toString(albumId), title);
+            hasAlbums = true;
+        }
+
+        @Override
+        public void endArtist() throws IOException {
+            if (open && !hasAlbums) {
+                writeLine("", null);
+            }
+            open = false;
+        }
+
+        private void writeLine(String albumId, String title) throws IOException {
+            writer.write(Long.toString(artistId));
+            writer.write(',');
+            writeField(name);
+            writer.write(',');
+            writer.write(albumId);
+            writer.write(',');
+            writeField(title);
+            writer.write('\n');
+        }
+
+        /**
+         * Quotes the value if it contains a comma, a quote or a line break.
+         */
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package databases.mapped;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import databases.connection.ConnectionProvider;
+import databases.connection.QueryStreams;
+import databases.part02.Artist;
+import databases.part03.Album;
+
+/**
+ * A read-only copy of the Artist and Album tables in a binary file that is
+ * memory-mapped instead of read into the heap. Opening the file only maps it,
+ * so the first lookup can run right away, and the operating system loads the
+ * pages of the file as they are touched. A file that is already in the page
+ * cache needs no disk access at all.
+ *
+ * The lookups read the ids directly from the mapped file. Only the Artist and
+ * Album objects returned to the caller are created on the heap.
+ *
+ * File layout, all numbers big-endian:
+ *
+ * - header: magic number, format version, artist, album and artist range
+ * counts, and the start of each of the sections below
+ *
+ * - artist ids, sorted ascending (8 bytes each)
+ *
+ * - artist names, as (offset, length) pairs into the string section, length -1
+ * for NULL (8 bytes each)
+ *
+ * - artist rows in name order, i.e. the order of ArtistDAO.getArtists() (4
+ * bytes each)
+ *
+ * - album ids, album artist ids and album titles, sorted by ArtistId and
+ * AlbumId
+ *
+ * - the distinct artist ids of the albums, and the first album row of each
+ * (8 and 4 bytes each)
+ *
+ * - the UTF-8 bytes of all names and titles
+ *
+ * A mapped file cannot be larger than 2 GB.
+ */
+public class CatalogFile implements AutoCloseable {
+
+    public static final int MAGIC = 0x43484E4B; // "CHNK"
+    public static final int VERSION = 1;
+
+    private static final int ARTIST_IDS = 0;
+    private static final int ARTIST_NAMES = 1;
+    private static final int ARTIST_NAME_ORDER = 2;
+    private static final int ALBUM_IDS = 3;
+    private static final int ALBUM_ARTIST_IDS = 4;
+    private static final int ALBUM_TITLES = 5;
+    private static final int RANGE_ARTIST_IDS = 6;
+    private static final int RANGE_STARTS = 7;
+    private static final int STRINGS = 8;
+    private static final int SECTION_COUNT = 9;
+
+    private static final int HEADER_SIZE = 24 + 8 * SECTION_COUNT;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int artistCount;
+    private final int albumCount;
+    private final int rangeCount;
+    private final int[] sections = new int[SECTION_COUNT];
+
+    private CatalogFile(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported catalog file version " + version + ", expected " + VERSION);
+        }
+
+        this.artistCount = buffer.getInt(8);
+        this.albumCount = buffer.getInt(12);
+        this.rangeCount = buffer.getInt(16);
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sections[i] = Math.toIntExact(buffer.getLong(24 + 8 * i));
+        }
+    }
+
+    /**
+     * Maps the given catalog file into memory.
+     *
+     * @throws IOException if the file cannot be read, or it is not a catalog file
+     *                     of a supported version.
+     */
+    public static CatalogFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CatalogFile(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the artist with the specified id, or null if there is none, like
+     * ArtistDAO.getArtistById().
+     */
+    public Artist getArtistById(long id) {
+        int row = binarySearch(sections[ARTIST_IDS], artistCount, id);
+        if (row < 0) {
+            return null;
+        }
+        return artistAt(row);
+    }
+
+    /**
+     * Returns all artists ordered by name, like ArtistDAO.getArtists().
+     */
+    public List<Artist> getArtists() {
+        List<Artist> artists = new ArrayList<>(artistCount);
+        for (int i = 0; i < artistCount; i++) {
+            artists.add(artistAt(buffer.getInt(sections[ARTIST_NAME_ORDER] + 4 * i)));
+        }
+        return artists;
+    }
+
+    /**
+     * Returns the albums of the artist sorted by AlbumId, like
+     * AlbumDAO.getAlbumsByArtist().
+     */
+    public List<Album> getAlbumsByArtist(Artist artist) {
+        int range = binarySearch(sections[RANGE_ARTIST_IDS], rangeCount, artist.getId());
+        if (range < 0) {
+            return new ArrayList<>();
+        }
+
+        int start = buffer.getInt(sections[RANGE_STARTS] + 4 * range);
+        int end = buffer.getInt(sections[RANGE_STARTS] + 4 * (range + 1));
+
+        List<Album> albums = new ArrayList<>(end - start);
+        for (int row = start; row < end; row++) {
+            albums.add(new Album(buffer.getLong(sections[ALBUM_IDS] + 8 * row),
+                    stringAt(sections[ALBUM_TITLES] + 8 * row),
+                    buffer.getLong(sections[ALBUM_ARTIST_IDS] + 8 * row)));
+        }
+        return albums;
+    }
+
+    public int getArtistCount() {
+        return artistCount;
+    }
+
+    public int getAlbumCount() {
+        return albumCount;
+    }
+
+    private Artist artistAt(int row) {
+        return new Artist(buffer.getLong(sections[ARTIST_IDS] + 8 * row), stringAt(sections[ARTIST_NAMES] + 8 * row));
+    }
+
+    /**
+     * Decodes the string whose (offset, length) pair is at the given position.
+     */
+    private String stringAt(int position) {
+        int offset = buffer.getInt(position);
+        int length = buffer.getInt(position + 4);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(sections[STRINGS] + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Searches a section of sorted longs. Only absolute reads are used, so any
+     * number of threads can search the same buffer at the same time.
+     *
+     * @return the index of the value, or -1 if it is not found.
+     */
+    private int binarySearch(int section, int count, long value) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = buffer.getLong(section + 8 * middle);
+            if (candidate < value) {
+                low = middle + 1;
+            } else if (candidate > value) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released when the buffer is garbage
+     * collected, so the returned objects stay valid, but this CatalogFile must
+     * not be used anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the Artist and Album tables and writes them into a new catalog file.
+     * The file is first written next to the target and then moved over it, so
+     * readers never see a partially written file.
+     *
+     * @param connectionProvider the source of the connection.
+     * @param path               where to write the file.
+     */
+    public static void export(ConnectionProvider connectionProvider, Path path) throws IOException {
+        List<Artist> artistsByName = new ArrayList<>();
+        List<Album> albums = new ArrayList<>();
+
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                readArtists(connection, artistsByName);
+                readAlbums(connection, albums);
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        write(artistsByName, albums, temporary);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void readArtists(Connection connection, List<Artist> artists) throws SQLException {
+        try (PreparedStatement statement = connection
+                .prepareStatement("SELECT ArtistId, Name FROM Artist ORDER BY Name ASC")) {
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    artists.add(new Artist(resultSet.getLong(1), resultSet.getString(2)));
+                }
+            }
+        }
+    }
+
+    private static void readAlbums(Connection connection, List<Album> albums) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT AlbumId, Title, ArtistId FROM Album ORDER BY ArtistId ASC, AlbumId ASC")) {
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    albums.add(new Album(resultSet.getLong(1), resultSet.getString(2), resultSet.getLong(3)));
+                }
+            }
+        }
+    }
+
+    private static void write(List<Artist> artistsByName, List<Album> albums, Path path) throws IOException {
+        int artistCount = artistsByName.size();
+        int albumCount = albums.size();
+
+        // The artists are stored in id order, getArtists() follows the name order
+        long[] artistIds = new long[artistCount];
+        for (int i = 0; i < artistCount; i++) {
+            artistIds[i] = artistsByName.get(i).getId();
+        }
+        Arrays.sort(artistIds);
+
+        Artist[] artistsById = new Artist[artistCount];
+        int[] nameOrder = new int[artistCount];
+        for (int i = 0; i < artistCount; i++) {
+            Artist artist = artistsByName.get(i);
+            int row = Arrays.binarySearch(artistIds, artist.getId());
+            artistsById[row] = artist;
+            nameOrder[i] = row;
+        }
+
+        List<Long> rangeArtistIds = new ArrayList<>();
+        List<Integer> rangeStarts = new ArrayList<>();
+        for (int row = 0; row < albumCount; row++) {
+            if (row == 0 || albums.get(row).getArtistId() != albums.get(row - 1).getArtistId()) {
+                rangeArtistIds.add(albums.get(row).getArtistId());
+                rangeStarts.add(row);
+            }
+        }
+        rangeStarts.add(albumCount);
+        int rangeCount = rangeArtistIds.size();
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        long[] sections = new long[SECTION_COUNT];
+        long position = HEADER_SIZE;
+        int[] sizes = { 8 * artistCount, 8 * artistCount, 4 * artistCount, 8 * albumCount, 8 * albumCount,
+                8 * albumCount, 8 * rangeCount, 4 * (rangeCount + 1) };
+        for (int i = 0; i < sizes.length; i++) {
+            sections[i] = position;
+            position = align(position + sizes[i]);
+        }
+        sections[STRINGS] = position;
+
+        ByteBuffer body = ByteBuffer.allocate(Math.toIntExact(position));
+        body.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, artistCount).putInt(12, albumCount).putInt(16,
+                rangeCount);
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            body.putLong(24 + 8 * i, sections[i]);
+        }
+
+        for (int row = 0; row < artistCount; row++) {
+            body.putLong(Math.toIntExact(sections[ARTIST_IDS] + 8L * row), artistIds[row]);
+            putString(body, Math.toIntExact(sections[ARTIST_NAMES] + 8L * row), artistsById[row].getName(),
+                    strings);
+            body.putInt(Math.toIntExact(sections[ARTIST_NAME_ORDER] + 4L * row), nameOrder[row]);
+        }
+        for (int row = 0; row < albumCount; row++) {
+            Album album = albums.get(row);
+            body.putLong(Math.toIntExact(sections[ALBUM_IDS] + 8L * row), album.getId());
+            body.putLong(Math.toIntExact(sections[ALBUM_ARTIST_IDS] + 8L * row), album.getArtistId());
+            putString(body, Math.toIntExact(sections[ALBUM_TITLES] + 8L * row), album.getTitle(), strings);
+        }
+        for (int range = 0; range < rangeCount; range++) {
+            body.putLong(Math.toIntExact(sections[RANGE_ARTIST_IDS] + 8L * range), rangeArtistIds.get(range));
+        }
+        for (int range = 0; range <= rangeCount; range++) {
+            body.putInt(Math.toIntExact(sections[RANGE_STARTS] + 4L * range), rangeStarts.get(range));
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(body);
+            channel.write(ByteBuffer.wrap(strings.toByteArray()));
+            channel.force(true);
+        }
+    }
+
+    private static void putString(ByteBuffer body, int position, String value, ByteArrayOutputStream strings) {
+        if (value == null) {
+            body.putInt(position, 0).putInt(position + 4, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        body.putInt(position, strings.size()).putInt(position + 4, bytes.length);
+        strings.writeBytes(bytes);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -0,0 +1,34 @@
+package databases.mapped;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+
+/**
+ * Exports the Chinook database into a catalog file and looks up one artist
+ * and their albums from the mapped file.
+ *
+ * Usage: CatalogFileMain [output file], by default data/Chinook.catalog
+ */
+public class CatalogFileMain {
+
+    private static final String JDBC_URL = "jdbc:sqlite:data/Chinook_Sqlite.sqlite";
+
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : "data/Chinook.catalog");
+
+        long start = System.nanoTime();
+        CatalogFile.export(ConnectionProvider.forUrl(JDBC_URL), path);
+        System.out.printf("Exported %s in %d ms%n", path, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        try (CatalogFile catalog = CatalogFile.open(path)) {
+            Artist artist = catalog.getArtistById(1);
+            System.out.println(artist + ": " + catalog.getAlbumsByArtist(artist));
+            System.out.printf("Opened %d artists and %d albums and did the first lookup in %d µs%n",
+                    catalog.getArtistCount(), catalog.getAlbumCount(), (System.nanoTime() - start) / 1000);
+        }
+    }
+}
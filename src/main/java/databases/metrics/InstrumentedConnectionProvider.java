@@ -0,0 +1,274 @@
+package databases.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * A ConnectionProvider that measures how long the DAOs spend in each phase of
+ * a query and records the results in a {@link QueryMetrics}:
+ *
+ * - acquire: getting the connection from the wrapped provider
+ *
+ * - prepare: prepareStatement()
+ *
+ * - execute: executeQuery(), executeUpdate() and executeBatch()
+ *
+ * - mapping: from the end of executeQuery() until the ResultSet is closed, i.e.
+ * reading the rows and turning them into objects
+ *
+ * The DAO method is found by looking up the call stack when the connection is
+ * borrowed, so the DAOs do not need to know about the instrumentation. Wrap the
+ * provider given to a DAO to instrument it:
+ *
+ * <pre>
+ * QueryMetrics metrics = new QueryMetrics();
+ * ArtistDAO artistDAO = new ArtistDAO(new InstrumentedConnectionProvider(pool, metrics));
+ * </pre>
+ *
+ * When the metrics are disabled, connections are returned from the wrapped
+ * provider as they are, without any wrapping or timing.
+ */
+public class InstrumentedConnectionProvider implements ConnectionProvider {
+
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    private final ConnectionProvider delegate;
+    private final QueryMetrics metrics;
+
+    public InstrumentedConnectionProvider(ConnectionProvider delegate, QueryMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!metrics.isEnabled()) {
+            return delegate.getConnection();
+        }
+
+        long start = System.nanoTime();
+        Connection connection = delegate.getConnection();
+        long acquired = System.nanoTime();
+
+        String method = findCallingDaoMethod();
+        QueryMetrics.Timings methodTimings = metrics.methodTimings(method);
+        methodTimings.acquire.record(acquired - start);
+
+        return (Connection) Proxy.newProxyInstance(
+                InstrumentedConnectionProvider.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ConnectionHandler(connection, method, methodTimings, start));
+    }
+
+    /**
+     * Returns e.g. "ArtistDAO.getArtists" for the closest DAO method on the call
+     * stack, or "unknown" if the connection was not borrowed by a DAO.
+     */
+    private static String findCallingDaoMethod() {
+        Optional<String> method = stackWalker.walk(frames -> frames
+                .filter(frame -> frame.getClassName().endsWith("DAO"))
+                .map(frame -> {
+                    String className = frame.getClassName();
+                    return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+                })
+                .findFirst());
+        return method.orElse("unknown");
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final String method;
+        private final QueryMetrics.Timings methodTimings;
+        private final long start;
+        private boolean closed;
+
+        ConnectionHandler(Connection connection, String method, QueryMetrics.Timings methodTimings, long start) {
+            this.connection = connection;
+            this.method = method;
+            this.methodTimings = methodTimings;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method invoked, Object[] args) throws Throwable {
+            switch (invoked.getName()) {
+                case "prepareStatement": {
+                    String sql = (String) args[0];
+                    QueryMetrics.Timings sqlTimings = metrics.sqlTimings(sql);
+
+                    long before = System.nanoTime();
+                    PreparedStatement statement = (PreparedStatement) InstrumentedConnectionProvider.invoke(
+                            connection, invoked, args);
+                    long elapsed = System.nanoTime() - before;
+
+                    methodTimings.prepare.record(elapsed);
+                    sqlTimings.prepare.record(elapsed);
+
+                    return Proxy.newProxyInstance(
+                            InstrumentedConnectionProvider.class.getClassLoader(),
+                            new Class<?>[] { PreparedStatement.class },
+                            new StatementHandler(statement, (Connection) proxy, this, sql, sqlTimings));
+                }
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        methodTimings.total.record(System.nanoTime() - start);
+                    }
+                    return InstrumentedConnectionProvider.invoke(connection, invoked, args);
+                default:
+                    return InstrumentedConnectionProvider.invoke(connection, invoked, args);
+            }
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final Connection owner;
+        private final ConnectionHandler connection;
+        private final String sql;
+        private final QueryMetrics.Timings sqlTimings;
+        private ResultSetHandler openResults;
+
+        StatementHandler(PreparedStatement statement, Connection owner, ConnectionHandler connection, String sql,
+                QueryMetrics.Timings sqlTimings) {
+            this.statement = statement;
+            this.owner = owner;
+            this.connection = connection;
+            this.sql = sql;
+            this.sqlTimings = sqlTimings;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method invoked, Object[] args) throws Throwable {
+            switch (invoked.getName()) {
+                case "executeQuery": {
+                    long before = System.nanoTime();
+                    ResultSet resultSet = (ResultSet) InstrumentedConnectionProvider.invoke(statement, invoked, args);
+                    long elapsed = System.nanoTime() - before;
+                    recordExecute(elapsed);
+
+                    openResults = new ResultSetHandler(resultSet, this, elapsed);
+                    return Proxy.newProxyInstance(
+                            InstrumentedConnectionProvider.class.getClassLoader(),
+                            new Class<?>[] { ResultSet.class },
+                            openResults);
+                }
+                case "execute", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch": {
+                    long before = System.nanoTime();
+                    Object result = InstrumentedConnectionProvider.invoke(statement, invoked, args);
+                    long elapsed = System.nanoTime() - before;
+                    recordExecute(elapsed);
+                    sqlTimings.total.record(elapsed);
+                    metrics.statementCompleted(connection.method, sql, elapsed, 0);
+                    return result;
+                }
+                case "getConnection":
+                    return owner;
+                case "close":
+                    if (openResults != null) {
+                        openResults.finish();
+                    }
+                    return InstrumentedConnectionProvider.invoke(statement, invoked, args);
+                default:
+                    return InstrumentedConnectionProvider.invoke(statement, invoked, args);
+            }
+        }
+
+        private void recordExecute(long elapsed) {
+            connection.methodTimings.execute.record(elapsed);
+            sqlTimings.execute.record(elapsed);
+        }
+    }
+
+    private class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet resultSet;
+        private final StatementHandler statement;
+        private final long executeNanos;
+        private final long mappingStart = System.nanoTime();
+        private long rows;
+        private long bytes;
+        private boolean finished;
+
+        ResultSetHandler(ResultSet resultSet, StatementHandler statement, long executeNanos) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.executeNanos = executeNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method invoked, Object[] args) throws Throwable {
+            Object result = InstrumentedConnectionProvider.invoke(resultSet, invoked, args);
+
+            switch (invoked.getName()) {
+                case "next":
+                    if ((Boolean) result) {
+                        rows++;
+                    }
+                    break;
+                case "getString":
+                    if (result != null) {
+                        bytes += 2L * ((String) result).length();
+                    }
+                    break;
+                case "getLong", "getDouble":
+                    bytes += 8;
+                    break;
+                case "getInt", "getFloat":
+                    bytes += 4;
+                    break;
+                case "close":
+                    finish();
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+
+        /**
+         * Records the measurements of this result set once, when either the result
+         * set or its statement is closed.
+         */
+        void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+
+            long mapping = System.nanoTime() - mappingStart;
+            QueryMetrics.Timings methodTimings = statement.connection.methodTimings;
+            QueryMetrics.Timings sqlTimings = statement.sqlTimings;
+
+            methodTimings.mapping.record(mapping);
+            methodTimings.rows.add(rows);
+            methodTimings.bytes.add(bytes);
+
+            sqlTimings.mapping.record(mapping);
+            sqlTimings.rows.add(rows);
+            sqlTimings.bytes.add(bytes);
+            sqlTimings.total.record(executeNanos + mapping);
+
+            metrics.statementCompleted(statement.connection.method, statement.sql, executeNanos + mapping, rows);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package databases.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, lock-free histogram of durations in nanoseconds, in the style
+ * of HdrHistogram.
+ *
+ * Each power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so
+ * a recorded value is off by at most 12.5% while the whole range from 1 ns to
+ * centuries fits into {@value #BUCKET_COUNT} counters. Recording a value only
+ * increments counters and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 1);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    private static int bucketOf(long value) {
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = exponent >= SUB_BUCKET_BITS
+                ? (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1)
+                : (int) (value << (SUB_BUCKET_BITS - exponent)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that falls into the given bucket.
+     */
+    private static long upperBoundOf(int bucket) {
+        int exponent = bucket / SUB_BUCKETS;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        if (exponent < SUB_BUCKET_BITS) {
+            return mantissa >>> (SUB_BUCKET_BITS - exponent);
+        }
+        long lowerBound = mantissa << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns the value below which the given share of the recorded values fall,
+     * e.g. percentile(0.99) for the 99th percentile.
+     *
+     * @param quantile between 0 and 1.
+     * @return the percentile in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long percentile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0.0 : (double) getSum() / n;
+    }
+}
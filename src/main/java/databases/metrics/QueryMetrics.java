@@ -0,0 +1,287 @@
+package databases.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the measurements made by {@link InstrumentedConnectionProvider}.
+ *
+ * For every DAO method and every SQL statement there is a {@link Timings}
+ * entry with latency histograms for the phases of a query: acquiring the
+ * connection, preparing the statement, executing it and mapping the rows, plus
+ * the number of rows fetched and bytes read from them. Queries that take
+ * longer than the slow query threshold are written to the "databases.slowquery"
+ * logger.
+ *
+ * The metrics can be read programmatically, dumped in the Prometheus text
+ * format with {@link #toPrometheusText()}, or published over JMX with
+ * {@link #registerMBean(String)}.
+ *
+ * Statements that differ only in the length of a parameter list, like the
+ * IN (?, ?, ...) queries of AlbumDAO.getAlbumsByArtists(), share one Timings
+ * entry. In the Prometheus text a statement is labelled with a short id
+ * instead of its SQL, which keeps the label values short and their number
+ * bounded by the number of distinct statements in the code.
+ * {@link #getStatementsById()} maps the ids back to the SQL.
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+
+    private static final System.Logger slowQueryLog = System.getLogger("databases.slowquery");
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private final Map<String, Timings> byMethod = new ConcurrentHashMap<>();
+    private final Map<String, Timings> bySql = new ConcurrentHashMap<>();
+    private final Map<String, Timings> byStatementId = new ConcurrentHashMap<>();
+    private final Map<String, String> sqlByStatementId = new ConcurrentHashMap<>();
+    private final LongAdder slowQueries = new LongAdder();
+
+    private volatile boolean enabled = true;
+    private volatile long slowQueryThresholdNanos;
+
+    /**
+     * Creates metrics with a slow query threshold of 100 ms.
+     */
+    public QueryMetrics() {
+        this(Duration.ofMillis(100));
+    }
+
+    public QueryMetrics(Duration slowQueryThreshold) {
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    /**
+     * The latency histograms and counters of one DAO method or SQL statement.
+     */
+    public static class Timings {
+
+        public final LatencyHistogram total = new LatencyHistogram();
+        public final LatencyHistogram acquire = new LatencyHistogram();
+        public final LatencyHistogram prepare = new LatencyHistogram();
+        public final LatencyHistogram execute = new LatencyHistogram();
+        public final LatencyHistogram mapping = new LatencyHistogram();
+        public final LongAdder rows = new LongAdder();
+        public final LongAdder bytes = new LongAdder();
+    }
+
+    /**
+     * @return the measurements of the given DAO method, e.g.
+     *         "ArtistDAO.getArtists", or null if it has not been called.
+     */
+    public Timings forMethod(String method) {
+        return byMethod.get(method);
+    }
+
+    /**
+     * @return the measurements of the given SQL statement, or null if it has not
+     *         been executed.
+     */
+    public Timings forSql(String sql) {
+        return bySql.get(sql);
+    }
+
+    /**
+     * @return every SQL statement that has been prepared through the
+     *         instrumented provider, e.g. for checking their query plans.
+     */
+    public Set<String> getStatements() {
+        return new TreeSet<>(bySql.keySet());
+    }
+
+    Timings methodTimings(String method) {
+        return byMethod.computeIfAbsent(method, key -> new Timings());
+    }
+
+    /**
+     * @return the ids and SQL of the statements in the Prometheus text, with
+     *         parameter lists shortened to "(?, ...)".
+     */
+    public Map<String, String> getStatementsById() {
+        return new TreeMap<>(sqlByStatementId);
+    }
+
+    Timings sqlTimings(String sql) {
+        return bySql.computeIfAbsent(sql, key -> {
+            String normalized = normalize(key);
+            String id = statementId(normalized);
+            sqlByStatementId.putIfAbsent(id, normalized);
+            return byStatementId.computeIfAbsent(id, statement -> new Timings());
+        });
+    }
+
+    /**
+     * Collapses whitespace and lists of parameters, so that the statements built
+     * for different numbers of values count as one.
+     */
+    static String normalize(String sql) {
+        return PARAMETER_LIST.matcher(sql.strip().replaceAll("\\s+", " ")).replaceAll("(?, ...)");
+    }
+
+    /**
+     * @return the first 12 hex digits of the SHA-256 hash of the statement.
+     */
+    static String statementId(String normalizedSql) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(normalizedSql.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java implementation has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Called when a statement has finished, i.e. its results have been read.
+     */
+    void statementCompleted(String method, String sql, long totalNanos, long rows) {
+        if (totalNanos < slowQueryThresholdNanos) {
+            return;
+        }
+        slowQueries.increment();
+        slowQueryLog.log(System.Logger.Level.WARNING, "Slow query in {0}: {1} ms, {2} rows, statement {3}: {4}",
+                method, TimeUnit.NANOSECONDS.toMillis(totalNanos), rows, statementId(normalize(sql)), sql);
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format.
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        text.append("# TYPE dao_slow_queries_total counter\n");
+        text.append("dao_slow_queries_total ").append(slowQueries.sum()).append('\n');
+
+        appendTimings(text, "dao_method", "method", new TreeMap<>(byMethod));
+        appendTimings(text, "dao_statement", "statement", new TreeMap<>(byStatementId));
+        return text.toString();
+    }
+
+    /**
+     * Appends the three metric families of the given timings. The format
+     * requires all lines of a family to form one group.
+     */
+    private static void appendTimings(StringBuilder text, String prefix, String label, Map<String, Timings> timings) {
+        text.append("# TYPE ").append(prefix).append("_seconds summary\n");
+        for (Map.Entry<String, Timings> entry : timings.entrySet()) {
+            String labels = labels(label, entry.getKey());
+            Timings t = entry.getValue();
+
+            appendPhase(text, prefix, labels, "total", t.total);
+            appendPhase(text, prefix, labels, "acquire", t.acquire);
+            appendPhase(text, prefix, labels, "prepare", t.prepare);
+            appendPhase(text, prefix, labels, "execute", t.execute);
+            appendPhase(text, prefix, labels, "mapping", t.mapping);
+        }
+
+        text.append("# TYPE ").append(prefix).append("_rows_total counter\n");
+        for (Map.Entry<String, Timings> entry : timings.entrySet()) {
+            text.append(prefix).append("_rows_total{").append(labels(label, entry.getKey())).append("} ")
+                    .append(entry.getValue().rows.sum()).append('\n');
+        }
+
+        text.append("# TYPE ").append(prefix).append("_bytes_total counter\n");
+        for (Map.Entry<String, Timings> entry : timings.entrySet()) {
+            text.append(prefix).append("_bytes_total{").append(labels(label, entry.getKey())).append("} ")
+                    .append(entry.getValue().bytes.sum()).append('\n');
+        }
+    }
+
+    private static String labels(String label, String value) {
+        return label + "=\"" + escape(value) + "\"";
+    }
+
+    private static void appendPhase(StringBuilder text, String prefix, String labels, String phase,
+            LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        String phaseLabels = labels + ",phase=\"" + phase + "\"";
+        for (double quantile : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+            text.append(prefix).append("_seconds{").append(phaseLabels).append(",quantile=\"").append(quantile)
+                    .append("\"} ").append(seconds(histogram.percentile(quantile))).append('\n');
+        }
+        text.append(prefix).append("_seconds_sum{").append(phaseLabels).append("} ")
+                .append(seconds(histogram.getSum())).append('\n');
+        text.append(prefix).append("_seconds_count{").append(phaseLabels).append("} ")
+                .append(histogram.getCount()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Publishes these metrics over JMX as "databases:type=QueryMetrics,name=..."
+     */
+    public void registerMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("databases:type=QueryMetrics,name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the query metrics MBean " + name, e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    @Override
+    public Map<String, Long> getQueryCountsByMethod() {
+        Map<String, Long> counts = new TreeMap<>();
+        byMethod.forEach((method, timings) -> counts.put(method, timings.total.getCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getP99MicrosByMethod() {
+        Map<String, Long> p99 = new TreeMap<>();
+        byMethod.forEach((method, timings) -> p99.put(method,
+                TimeUnit.NANOSECONDS.toMicros(timings.total.percentile(0.99))));
+        return p99;
+    }
+
+    @Override
+    public String getPrometheusText() {
+        return toPrometheusText();
+    }
+}
@@ -0,0 +1,25 @@
+package databases.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link QueryMetrics}, e.g. for JConsole or VisualVM.
+ */
+public interface QueryMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    long getSlowQueryCount();
+
+    Map<String, Long> getQueryCountsByMethod();
+
+    Map<String, Long> getP99MicrosByMethod();
+
+    String getPrometheusText();
+}
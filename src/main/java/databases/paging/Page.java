@@ -0,0 +1,18 @@
+package databases.paging;
+
+import java.util.List;
+
+/**
+ * One page of results from a paged query.
+ *
+ * @param items         the items on this page, at most the requested limit.
+ * @param nextPageToken an opaque token for fetching the next page, or null if
+ *                      this is the last page.
+ * @param <T>           the type of the items, e.g. Artist.
+ */
+public record Page<T>(List<T> items, String nextPageToken) {
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
@@ -0,0 +1,43 @@
+package databases.paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the position of the last row of a page into an opaque string, and
+ * back. The position is the sort key of the row: an id, optionally preceded by
+ * a name when the rows are sorted by name first.
+ *
+ * Callers should treat the tokens as opaque, the format may change.
+ */
+public record PageToken(String name, long id) {
+
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    /**
+     * Returns the token as a URL-safe string.
+     */
+    public String encode() {
+        String plain = name == null ? Long.toString(id) : id + ":" + name;
+        return encoder.encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a token created by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    public static PageToken decode(String token) {
+        try {
+            String plain = new String(decoder.decode(token), StandardCharsets.UTF_8);
+            int separator = plain.indexOf(':');
+            if (separator < 0) {
+                return new PageToken(null, Long.parseLong(plain));
+            }
+            return new PageToken(plain.substring(separator + 1), Long.parseLong(plain.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+    }
+}
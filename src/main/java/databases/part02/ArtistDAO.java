@@ -1,28 +1,88 @@
 package databases.part02;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import databases.connection.ConnectionPool;
+import databases.connection.ConnectionProvider;
+import databases.connection.LongObjConsumer;
+import databases.connection.QueryStreams;
+import databases.connection.ReadWriteRouter;
+import databases.connection.StatementBinder;
+import databases.paging.Page;
+import databases.paging.PageToken;
 
 /**
  * Data Access Object for the Artist table in the Chinook database.
  */
 public class ArtistDAO {
 
+    static final String SELECT_ALL_ORDER_BY_NAME = "SELECT ArtistId, Name FROM Artist ORDER BY Name ASC";
+
+    /*
+     * The paging queries continue right after the last row of the previous page.
+     * Both SQLite and MySQL sort NULL names first, so a NULL name is "before" all
+     * other names.
+     */
+    private static final String SELECT_PAGE_AFTER_NAME = """
+            SELECT ArtistId, Name FROM Artist
+            WHERE (Name, ArtistId) > (?, ?)
+            ORDER BY Name ASC, ArtistId ASC
+            LIMIT ?""";
+
+    private static final String SELECT_PAGE_AFTER_NULL_NAME = """
+            SELECT ArtistId, Name FROM Artist
+            WHERE (Name IS NULL AND ArtistId > ?) OR Name IS NOT NULL
+            ORDER BY Name ASC, ArtistId ASC
+            LIMIT ?""";
+
     /**
-     * The connection string used to connect to the database. You MUST use this
-     * string when connecting to the database using JDBC. In the unit tests, this
-     * field will be set to a different value.
+     * Provide the connections used to access the database. In the unit tests,
+     * these providers connect to a different database than the main program.
+     * Unless the DAO was created with a ReadWriteRouter, both are the same.
      */
-    private final String connectionString;
+    private final ConnectionProvider readConnections;
+    private final ConnectionProvider writeConnections;
 
     /**
      * Creates a new ArtistDAO that uses the specified connection string to connect
      * to the database. For example: "jdbc:sqlite:data/Chinook_Sqlite.sqlite"
      *
+     * A new connection is opened for each method call. Use the other constructor
+     * with a {@link ConnectionPool} to reuse connections between calls.
+     *
      * @param connectionString, see https://www.baeldung.com/java-jdbc-url-format
      */
     public ArtistDAO(String connectionString) {
-        this.connectionString = connectionString;
+        this(ConnectionProvider.forUrl(connectionString));
+    }
+
+    /**
+     * Creates a new ArtistDAO that gets its connections from the given provider,
+     * for example from {@code ConnectionPool.shared(connectionString)}.
+     *
+     * @param connectionProvider the source of database connections.
+     */
+    public ArtistDAO(ConnectionProvider connectionProvider) {
+        this.readConnections = connectionProvider;
+        this.writeConnections = connectionProvider;
+    }
+
+    /**
+     * Creates a new ArtistDAO that reads from the router's read connections and
+     * writes through its primary connection.
+     *
+     * @param router decides where each connection comes from.
+     */
+    public ArtistDAO(ReadWriteRouter router) {
+        this.readConnections = router.reads();
+        this.writeConnections = router.writes();
     }
 
     /**
@@ -34,15 +94,17 @@ public class ArtistDAO {
     public List<Artist> getArtists() {
         List<Artist> artists = new ArrayList<>();
 
-        /*
-         * hint: see the class from part 1 for an example of how to connect to the
-         * database and retrieve data from it. This time create new Artist objects
-         * instead of printing the results to the console.
-         *
-         * Note that you must use the `connectionString` field in this class to connect
-         * to the database. You can't "hard code" the connection string, as that would
-         * make tests run against your actual database, which may have unexpected data.
-         */
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_ALL_ORDER_BY_NAME);
+                ResultSet resultSet = statement.executeQuery()) {
+
+            ArtistRowMapper mapper = ArtistRowMapper.INSTANCE.resolve(resultSet);
+            while (resultSet.next()) {
+                artists.add(mapper.map(resultSet));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
 
         return artists;
     }
@@ -56,21 +118,168 @@ public class ArtistDAO {
      *         that id.
      */
     public Artist getArtistById(long id) {
-        /*
-         * hint: use similar code to the getArtists() method above, but add a WHERE
-         * clause to the SQL query to only retrieve the artist with the specified id.
-         *
-         * The id can be added to the SQL query using PreparedStatement's setLong()
-         * method. For example: preparedStatement.setLong(1, id);
-         *
-         * You could also just call the getArtists() method above and iterate through
-         * the results until you find the artist with the specified id. This is less
-         * efficient, but it gets the job done and is easy to implement.
-         *
-         * Note that you must use the `connectionString` field in this class to connect
-         * to the database. You can't "hard code" the connection string, as that would
-         * make tests run against your actual database, which may have unexpected data.
-         */
-        return null;
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection
+                        .prepareStatement("SELECT ArtistId, Name FROM Artist WHERE ArtistId = ?")) {
+
+            statement.setLong(1, id);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return ArtistRowMapper.INSTANCE.map(resultSet);
+                }
+                return null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns all artists in the database as a lazily populated stream, ordered by
+     * artist name. Unlike getArtists(), the artists are read from the database one
+     * batch at a time while the stream is consumed.
+     *
+     * The stream holds a database connection until it is closed, so always use it
+     * in a try-with-resources block.
+     *
+     * @return a stream of all artists in the database.
+     */
+    public Stream<Artist> streamArtists() {
+        return streamArtists(QueryStreams.DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Same as streamArtists(), but with a custom JDBC fetch size.
+     *
+     * @param fetchSize how many rows the driver should fetch at a time.
+     * @return a stream of all artists in the database.
+     */
+    public Stream<Artist> streamArtists(int fetchSize) {
+        try {
+            return QueryStreams.stream(readConnections, SELECT_ALL_ORDER_BY_NAME, StatementBinder.NONE, fetchSize,
+                    ArtistRowMapper.INSTANCE);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Passes each artist in the database to the given consumer, ordered by artist
+     * name. The resources are closed before this method returns.
+     *
+     * @param consumer called once for each artist.
+     */
+    public void forEachArtist(Consumer<? super Artist> consumer) {
+        try (Stream<Artist> artists = streamArtists()) {
+            artists.forEach(consumer);
+        }
+    }
+
+    /**
+     * Passes the id and name of each artist to the given consumer, ordered by
+     * artist name. No Artist objects are created, which makes this the cheapest
+     * way to scan the whole table when only these two values are needed.
+     *
+     * @param consumer called once for each artist with its id and name.
+     */
+    public void forEachArtistIdAndName(LongObjConsumer<String> consumer) {
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_ALL_ORDER_BY_NAME)) {
+
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int idColumn = resultSet.findColumn("ArtistId");
+                int nameColumn = resultSet.findColumn("Name");
+
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getLong(idColumn), resultSet.getString(nameColumn));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns one page of artists ordered by name, starting right after the given
+     * artist. Instead of skipping rows with OFFSET, the query seeks directly to
+     * the starting position using the (Name, ArtistId) index, so every page is
+     * as fast to fetch as the first one.
+     *
+     * @param afterName the name of the last artist on the previous page, or null
+     *                  to start from the beginning.
+     * @param afterId   the id of the last artist on the previous page, or
+     *                  Long.MIN_VALUE to start from the beginning.
+     * @param limit     the maximum number of artists on the page.
+     * @return the page, and a token for the next page if there are more artists.
+     */
+    public Page<Artist> getArtistsPage(String afterName, long afterId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, was " + limit);
+        }
+
+        List<Artist> artists = new ArrayList<>();
+
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection
+                        .prepareStatement(afterName == null ? SELECT_PAGE_AFTER_NULL_NAME : SELECT_PAGE_AFTER_NAME)) {
+
+            int index = 1;
+            if (afterName != null) {
+                statement.setString(index++, afterName);
+            }
+            statement.setLong(index++, afterId);
+
+            // One extra row tells whether there is a next page
+            statement.setInt(index, limit + 1);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ArtistRowMapper mapper = ArtistRowMapper.INSTANCE.resolve(resultSet);
+                while (resultSet.next()) {
+                    artists.add(mapper.map(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (artists.size() <= limit) {
+            return new Page<>(artists, null);
+        }
+
+        artists.remove(limit);
+        Artist last = artists.get(limit - 1);
+        return new Page<>(artists, new PageToken(last.getName(), last.getId()).encode());
+    }
+
+    /**
+     * Returns one page of artists ordered by name.
+     *
+     * @param pageToken the token of the previous page, or null for the first
+     *                  page.
+     * @param limit     the maximum number of artists on the page.
+     * @return the page, and a token for the next page if there are more artists.
+     */
+    public Page<Artist> getArtistsPage(String pageToken, int limit) {
+        if (pageToken == null) {
+            return getArtistsPage(null, Long.MIN_VALUE, limit);
+        }
+        PageToken position = PageToken.decode(pageToken);
+        return getArtistsPage(position.name(), position.id(), limit);
+    }
+
+    /**
+     * Creates the index used by getArtistsPage(), unless it already exists.
+     */
+    public void createPagingIndex() {
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "CREATE INDEX IF NOT EXISTS IX_Artist_Name_ArtistId ON Artist (Name, ArtistId)")) {
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
@@ -0,0 +1,38 @@
+package databases.part02;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import databases.connection.RowMapper;
+
+/**
+ * Creates Artist objects from rows with the columns ArtistId and Name.
+ *
+ * {@link #INSTANCE} looks the columns up by name. Calling resolve() returns a
+ * mapper that reads them by index, which the DAO does once per ResultSet.
+ */
+public class ArtistRowMapper implements RowMapper<Artist> {
+
+    public static final ArtistRowMapper INSTANCE = new ArtistRowMapper(-1, -1);
+
+    private final int idColumn;
+    private final int nameColumn;
+
+    private ArtistRowMapper(int idColumn, int nameColumn) {
+        this.idColumn = idColumn;
+        this.nameColumn = nameColumn;
+    }
+
+    @Override
+    public Artist map(ResultSet resultSet) throws SQLException {
+        if (idColumn < 0) {
+            return resolve(resultSet).map(resultSet);
+        }
+        return new Artist(resultSet.getLong(idColumn), resultSet.getString(nameColumn));
+    }
+
+    @Override
+    public ArtistRowMapper resolve(ResultSet resultSet) throws SQLException {
+        return new ArtistRowMapper(resultSet.findColumn("ArtistId"), resultSet.findColumn("Name"));
+    }
+}
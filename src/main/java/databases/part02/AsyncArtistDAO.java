@@ -0,0 +1,74 @@
+package databases.part02;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import databases.async.AsyncRunner;
+import databases.connection.ConnectionPool;
+
+/**
+ * A non-blocking version of ArtistDAO. Each method runs the corresponding
+ * ArtistDAO method on a virtual thread and returns a CompletableFuture.
+ *
+ * At most {@code maxConcurrency} queries run at the same time, the rest wait
+ * for their turn without blocking a platform thread. Every method has an
+ * overload with a timeout, and cancelling a returned future stops a query that
+ * has not started yet.
+ */
+public class AsyncArtistDAO implements AutoCloseable {
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ArtistDAO artistDAO;
+    private final AsyncRunner runner;
+
+    /**
+     * Creates an async DAO that runs as many queries at a time as the pool has
+     * connections.
+     */
+    public AsyncArtistDAO(ConnectionPool pool) {
+        this(new ArtistDAO(pool), pool.getMaxSize(), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param artistDAO      the DAO that runs the actual queries.
+     * @param maxConcurrency how many queries may run at the same time.
+     * @param defaultTimeout the timeout of the methods without a timeout
+     *                       parameter.
+     */
+    public AsyncArtistDAO(ArtistDAO artistDAO, int maxConcurrency, Duration defaultTimeout) {
+        this.artistDAO = artistDAO;
+        this.runner = new AsyncRunner(maxConcurrency, defaultTimeout);
+    }
+
+    /**
+     * @see ArtistDAO#getArtists()
+     */
+    public CompletableFuture<List<Artist>> getArtists() {
+        return runner.submit(artistDAO::getArtists);
+    }
+
+    public CompletableFuture<List<Artist>> getArtists(Duration timeout) {
+        return runner.submit(artistDAO::getArtists, timeout);
+    }
+
+    /**
+     * @see ArtistDAO#getArtistById(long)
+     */
+    public CompletableFuture<Artist> getArtistById(long id) {
+        return runner.submit(() -> artistDAO.getArtistById(id));
+    }
+
+    public CompletableFuture<Artist> getArtistById(long id, Duration timeout) {
+        return runner.submit(() -> artistDAO.getArtistById(id), timeout);
+    }
+
+    /**
+     * Stops accepting new calls.
+     */
+    @Override
+    public void close() {
+        runner.close();
+    }
+}
@@ -0,0 +1,132 @@
+package databases.part02;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import databases.cache.CacheStats;
+import databases.cache.LoadingCache;
+import databases.cache.QueryCacheStats;
+import databases.cache.QueryResultCache;
+import databases.connection.ConnectionProvider;
+
+/**
+ * An ArtistDAO that keeps recently requested artists in memory, so that
+ * getArtistById() only queries the database on a cache miss. Artists are
+ * rarely modified and a few popular artists get most of the lookups, which
+ * makes them a good fit for caching.
+ *
+ * Ids that do not exist are cached as well, for a shorter time. The list of
+ * all artists returned by getArtists() is kept in a {@link QueryResultCache},
+ * which can be shared with a {@link databases.part03.CachingAlbumDAO}. The
+ * other methods are not cached and behave exactly like in ArtistDAO.
+ *
+ * Nothing in this project modifies artists through a DAO yet. Code that
+ * changes the Artist table must call {@link #invalidate(long)} or
+ * {@link #invalidateAll()} so that the cache does not return stale data.
+ */
+public class CachingArtistDAO extends ArtistDAO {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(30);
+    public static final long DEFAULT_RESULT_CACHE_BYTES = 16 * 1024 * 1024;
+
+    private static final Set<String> ARTIST_TABLE = Set.of("Artist");
+
+    private final LoadingCache<Long, Artist> cache;
+    private final QueryResultCache resultCache;
+
+    /**
+     * Creates a caching DAO with the default size and expiration settings.
+     */
+    public CachingArtistDAO(ConnectionProvider connectionProvider) {
+        this(connectionProvider, DEFAULT_MAX_SIZE, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * @param connectionProvider the source of database connections.
+     * @param maxSize            the maximum number of cached ids.
+     * @param ttl                how long a found artist is cached.
+     * @param negativeTtl        how long a missing id is cached, Duration.ZERO
+     *                           disables caching of missing ids.
+     */
+    public CachingArtistDAO(ConnectionProvider connectionProvider, int maxSize, Duration ttl, Duration negativeTtl) {
+        this(connectionProvider, maxSize, ttl, negativeTtl, new QueryResultCache(DEFAULT_RESULT_CACHE_BYTES));
+    }
+
+    /**
+     * Creates a caching DAO that keeps the results of getArtists() in the given
+     * result cache, for example one shared with a CachingAlbumDAO.
+     */
+    public CachingArtistDAO(ConnectionProvider connectionProvider, QueryResultCache resultCache) {
+        this(connectionProvider, DEFAULT_MAX_SIZE, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, resultCache);
+    }
+
+    /**
+     * @param connectionProvider the source of database connections.
+     * @param maxSize            the maximum number of cached ids.
+     * @param ttl                how long a found artist is cached.
+     * @param negativeTtl        how long a missing id is cached, Duration.ZERO
+     *                           disables caching of missing ids.
+     * @param resultCache        where the results of getArtists() are kept.
+     */
+    public CachingArtistDAO(ConnectionProvider connectionProvider, int maxSize, Duration ttl, Duration negativeTtl,
+            QueryResultCache resultCache) {
+        super(connectionProvider);
+        this.cache = new LoadingCache<>(maxSize, ttl, negativeTtl, super::getArtistById);
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Returns the artist with the specified id from the cache, or from the
+     * database if it is not cached. Returns null if no artist exists with that
+     * id.
+     */
+    @Override
+    public Artist getArtistById(long id) {
+        return cache.get(id);
+    }
+
+    /**
+     * Returns all artists ordered by name, from the result cache if the list is
+     * cached. The returned list can not be modified.
+     */
+    @Override
+    public List<Artist> getArtists() {
+        return resultCache.get(SELECT_ALL_ORDER_BY_NAME, List.of(), ARTIST_TABLE, CachingArtistDAO::weigh,
+                super::getArtists);
+    }
+
+    /**
+     * Estimates the memory used by an Artist: a 24 byte object and its name.
+     */
+    static long weigh(Artist artist) {
+        return 24 + QueryResultCache.stringBytes(artist.getName());
+    }
+
+    /**
+     * Forgets the cached artist with the given id, and the cached lists of
+     * artists, which may contain it.
+     */
+    public void invalidate(long id) {
+        cache.invalidate(id);
+        resultCache.invalidateTable("Artist");
+    }
+
+    /**
+     * Forgets all cached artists.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        resultCache.invalidateTable("Artist");
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    public QueryCacheStats getResultCacheStats() {
+        return resultCache.stats();
+    }
+}
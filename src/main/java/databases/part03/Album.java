@@ -36,6 +36,15 @@ public class Album {
         return id;
     }
 
+    /**
+     * Sets the id generated by the database for a newly added album. Only the
+     * DAOs should call this: AlbumDAO and the DAOs of other packages, such as
+     * ShardedDAO, that add albums with their own statements.
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -1,7 +1,32 @@
 package databases.part03;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+import databases.connection.ConnectionPool;
+import databases.connection.ConnectionProvider;
+import databases.connection.LongObjConsumer;
+import databases.connection.QueryStreams;
+import databases.connection.ReadWriteRouter;
+import databases.paging.Page;
+import databases.paging.PageToken;
 import databases.part02.Artist;
 
 /**
@@ -9,21 +34,86 @@ import databases.part02.Artist;
  */
 public class AlbumDAO {
 
+    static final String SELECT_BY_ARTIST = "SELECT AlbumId, Title, ArtistId FROM Album "
+            + "WHERE ArtistId = ? ORDER BY AlbumId ASC";
+    static final String INSERT = "INSERT INTO Album (Title, ArtistId) VALUES (?, ?)";
+    static final String UPDATE = "UPDATE Album SET Title = ?, ArtistId = ? WHERE AlbumId = ?";
+    static final String DELETE = "DELETE FROM Album WHERE AlbumId = ?";
+    static final String UPDATE_TITLE_IF = "UPDATE Album SET Title = ? WHERE AlbumId = ? AND Title = ?";
+
+    /**
+     * Inserts an album or, if its id is already taken, overwrites that album. A
+     * NULL AlbumId makes the database generate a new id, so the same statement
+     * also adds new albums. RETURNING gives the id without another query.
+     */
+    static final String UPSERT_SQLITE = """
+            INSERT INTO Album (AlbumId, Title, ArtistId) VALUES (?, ?, ?)
+            ON CONFLICT (AlbumId) DO UPDATE SET Title = excluded.Title, ArtistId = excluded.ArtistId
+            RETURNING AlbumId""";
+
+    /**
+     * The MySQL version of UPSERT_SQLITE. MySQL has no RETURNING, but the driver
+     * returns the generated id as a generated key. The row alias "new" needs
+     * MySQL 8.0.19 or newer; it replaces the VALUES() function, which is
+     * deprecated since 8.0.20.
+     */
+    static final String UPSERT_MYSQL = """
+            INSERT INTO Album (AlbumId, Title, ArtistId) VALUES (?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE Title = new.Title, ArtistId = new.ArtistId""";
+
     /**
-     * The connection string used to connect to the database. You MUST use this
-     * string when connecting to the database using JDBC. In the unit tests, this
-     * field will be set to a different value.
+     * The default number of rows sent to the database in one JDBC batch by the
+     * bulk methods.
      */
-    private final String connectionString;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The maximum number of artist ids in one {@code IN (...)} query. Old SQLite
+     * versions allow at most 999 parameters per statement.
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    /**
+     * Provide the connections used to access the database. In the unit tests,
+     * these providers connect to a different database than the main program.
+     * Unless the DAO was created with a ReadWriteRouter, both are the same.
+     */
+    private final ConnectionProvider readConnections;
+    private final ConnectionProvider writeConnections;
 
     /**
      * Creates a new AlbumDAO that uses the specified connection string to connect
      * to the database. For example: "jdbc:sqlite:data/Chinook_Sqlite.sqlite"
      *
+     * A new connection is opened for each method call. Use the other constructor
+     * with a {@link ConnectionPool} to reuse connections between calls.
+     *
      * @param jdbcConnection see https://www.baeldung.com/java-jdbc-url-format
      */
     public AlbumDAO(String jdbcConnection) {
-        this.connectionString = jdbcConnection;
+        this(ConnectionProvider.forUrl(jdbcConnection));
+    }
+
+    /**
+     * Creates a new AlbumDAO that gets its connections from the given provider,
+     * for example from {@code ConnectionPool.shared(connectionString)}.
+     *
+     * @param connectionProvider the source of database connections.
+     */
+    public AlbumDAO(ConnectionProvider connectionProvider) {
+        this.readConnections = connectionProvider;
+        this.writeConnections = connectionProvider;
+    }
+
+    /**
+     * Creates a new AlbumDAO that reads from the router's read connections and
+     * writes through its primary connection.
+     *
+     * @param router decides where each connection comes from.
+     */
+    public AlbumDAO(ReadWriteRouter router) {
+        this.readConnections = router.reads();
+        this.writeConnections = router.writes();
     }
 
     /**
@@ -35,39 +125,298 @@ public class AlbumDAO {
      *         sorted by AlbumId in ascending order.
      */
     public List<Album> getAlbumsByArtist(Artist artist) {
-        /*
-         * hint: use the artist.getId() method to get the artist's id and add it to the
-         * SQL query using PreparedStatement's setLong() method. See the previous hint
-         * in ArtistDao.getArtist() for an example.
-         *
-         * Note that you must use the `connectionString` field in this class to connect
-         * to the database. You can't "hard code" the connection string, as that would
-         * make tests run against your actual database, which may have unexpected data.
-         *
-         * Make sure to sort the albums by AlbumId in ascending order (low to high).
-         */
-        return null;
+        List<Album> albums = new ArrayList<>();
+
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_BY_ARTIST)) {
+
+            statement.setLong(1, artist.getId());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                AlbumRowMapper mapper = AlbumRowMapper.INSTANCE.resolve(resultSet);
+                while (resultSet.next()) {
+                    albums.add(mapper.map(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        return albums;
+    }
+
+    /**
+     * Returns the albums of all of the specified artists. This uses one query per
+     * {@value #MAX_IDS_PER_QUERY} artists instead of one query per artist, so it
+     * is much faster than calling getAlbumsByArtist() in a loop.
+     *
+     * @param artists the artists whose albums to retrieve.
+     * @return a map from each artist's id to their albums, sorted by AlbumId in
+     *         ascending order. Artists without albums are mapped to an empty
+     *         list. The map iterates in the order of the given artists.
+     */
+    public Map<Long, List<Album>> getAlbumsByArtists(Collection<Artist> artists) {
+        Map<Long, List<Album>> albumsByArtist = new LinkedHashMap<>();
+        for (Artist artist : artists) {
+            albumsByArtist.putIfAbsent(artist.getId(), new ArrayList<>());
+        }
+
+        List<Long> ids = new ArrayList<>(albumsByArtist.keySet());
+        if (ids.isEmpty()) {
+            return albumsByArtist;
+        }
+
+        try (Connection connection = readConnections.getConnection()) {
+            for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+                List<Long> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_QUERY, ids.size()));
+
+                String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+                String sql = "SELECT AlbumId, Title, ArtistId FROM Album WHERE ArtistId IN (" + placeholders
+                        + ") ORDER BY ArtistId ASC, AlbumId ASC";
+
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setLong(i + 1, chunk.get(i));
+                    }
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        AlbumRowMapper mapper = AlbumRowMapper.INSTANCE.resolve(resultSet);
+                        while (resultSet.next()) {
+                            Album album = mapper.map(resultSet);
+                            albumsByArtist.get(album.getArtistId()).add(album);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        return albumsByArtist;
+    }
+
+    /**
+     * Returns all artists with their albums already attached, ordered by artist
+     * name. Everything is read with a single JOIN query.
+     *
+     * @return all artists in the database and their albums.
+     */
+    public List<ArtistWithAlbums> getArtistsWithAlbums() {
+        List<ArtistWithAlbums> result = new ArrayList<>();
+
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement("""
+                        SELECT Artist.ArtistId, Artist.Name, Album.AlbumId, Album.Title
+                        FROM Artist LEFT JOIN Album ON Album.ArtistId = Artist.ArtistId
+                        ORDER BY Artist.Name ASC, Artist.ArtistId ASC, Album.AlbumId ASC""");
+                ResultSet resultSet = statement.executeQuery()) {
+
+            int artistIdColumn = resultSet.findColumn("ArtistId");
+            int nameColumn = resultSet.findColumn("Name");
+            int albumIdColumn = resultSet.findColumn("AlbumId");
+            int titleColumn = resultSet.findColumn("Title");
+
+            ArtistWithAlbums current = null;
+            while (resultSet.next()) {
+                long artistId = resultSet.getLong(artistIdColumn);
+
+                if (current == null || current.artist().getId() != artistId) {
+                    current = new ArtistWithAlbums(new Artist(artistId, resultSet.getString(nameColumn)),
+                            new ArrayList<>());
+                    result.add(current);
+                }
+
+                // Artists without albums have a single row where the album columns are NULL
+                long albumId = resultSet.getLong(albumIdColumn);
+                if (!resultSet.wasNull()) {
+                    current.albums().add(new Album(albumId, resultSet.getString(titleColumn), artistId));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the albums of the specified artist as a lazily populated stream,
+     * sorted by AlbumId in ascending order. The albums are read from the database
+     * while the stream is consumed.
+     *
+     * The stream holds a database connection until it is closed, so always use it
+     * in a try-with-resources block.
+     *
+     * @param artist the artist whose albums to retrieve.
+     * @return a stream of the artist's albums.
+     */
+    public Stream<Album> streamAlbumsByArtist(Artist artist) {
+        return streamAlbumsByArtist(artist, QueryStreams.DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Same as streamAlbumsByArtist(Artist), but with a custom JDBC fetch size.
+     *
+     * @param artist    the artist whose albums to retrieve.
+     * @param fetchSize how many rows the driver should fetch at a time.
+     * @return a stream of the artist's albums.
+     */
+    public Stream<Album> streamAlbumsByArtist(Artist artist, int fetchSize) {
+        try {
+            return QueryStreams.stream(readConnections, SELECT_BY_ARTIST,
+                    statement -> statement.setLong(1, artist.getId()), fetchSize, AlbumRowMapper.INSTANCE);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Passes each album of the specified artist to the given consumer, sorted by
+     * AlbumId in ascending order. The resources are closed before this method
+     * returns.
+     *
+     * @param artist   the artist whose albums to retrieve.
+     * @param consumer called once for each album.
+     */
+    public void forEachAlbumByArtist(Artist artist, Consumer<? super Album> consumer) {
+        try (Stream<Album> albums = streamAlbumsByArtist(artist)) {
+            albums.forEach(consumer);
+        }
+    }
+
+    /**
+     * Passes the id and title of every album in the database to the given
+     * consumer, sorted by AlbumId in ascending order. No Album objects are
+     * created, which makes this the cheapest way to scan the whole table when
+     * only these two values are needed.
+     *
+     * @param consumer called once for each album with its id and title.
+     */
+    public void forEachAlbumIdAndTitle(LongObjConsumer<String> consumer) {
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection
+                        .prepareStatement("SELECT AlbumId, Title FROM Album ORDER BY AlbumId ASC")) {
+
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int idColumn = resultSet.findColumn("AlbumId");
+                int titleColumn = resultSet.findColumn("Title");
+
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getLong(idColumn), resultSet.getString(titleColumn));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns one page of the specified artist's albums sorted by AlbumId,
+     * starting right after the given album. The query seeks directly to the
+     * starting position using the (ArtistId, AlbumId) index instead of skipping
+     * rows with OFFSET.
+     *
+     * @param artist       the artist whose albums to retrieve.
+     * @param afterAlbumId the id of the last album on the previous page, or
+     *                     Long.MIN_VALUE to start from the beginning.
+     * @param limit        the maximum number of albums on the page.
+     * @return the page, and a token for the next page if there are more albums.
+     */
+    public Page<Album> getAlbumsByArtistPage(Artist artist, long afterAlbumId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, was " + limit);
+        }
+
+        List<Album> albums = new ArrayList<>();
+
+        try (Connection connection = readConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement("""
+                        SELECT AlbumId, Title, ArtistId FROM Album
+                        WHERE ArtistId = ? AND AlbumId > ?
+                        ORDER BY AlbumId ASC
+                        LIMIT ?""")) {
+
+            statement.setLong(1, artist.getId());
+            statement.setLong(2, afterAlbumId);
+
+            // One extra row tells whether there is a next page
+            statement.setInt(3, limit + 1);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                AlbumRowMapper mapper = AlbumRowMapper.INSTANCE.resolve(resultSet);
+                while (resultSet.next()) {
+                    albums.add(mapper.map(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (albums.size() <= limit) {
+            return new Page<>(albums, null);
+        }
+
+        albums.remove(limit);
+        return new Page<>(albums, new PageToken(null, albums.get(limit - 1).getId()).encode());
+    }
+
+    /**
+     * Returns one page of the specified artist's albums sorted by AlbumId.
+     *
+     * @param artist    the artist whose albums to retrieve.
+     * @param pageToken the token of the previous page, or null for the first
+     *                  page.
+     * @param limit     the maximum number of albums on the page.
+     * @return the page, and a token for the next page if there are more albums.
+     */
+    public Page<Album> getAlbumsByArtistPage(Artist artist, String pageToken, int limit) {
+        long afterAlbumId = pageToken == null ? Long.MIN_VALUE : PageToken.decode(pageToken).id();
+        return getAlbumsByArtistPage(artist, afterAlbumId, limit);
+    }
+
+    /**
+     * Creates the index used by getAlbumsByArtistPage() and getAlbumsByArtist(),
+     * unless it already exists.
+     */
+    public void createPagingIndex() {
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "CREATE INDEX IF NOT EXISTS IX_Album_ArtistId_AlbumId ON Album (ArtistId, AlbumId)")) {
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
      * Adds the specified album to the database. Returns true if the album was
-     * added successfully, false otherwise.
+     * added successfully, false otherwise. The id generated by the database is
+     * stored in the Album object.
      *
      * @param album the album to add to the database.
      * @return true if the album was added successfully, false otherwise.
      */
     public boolean addAlbum(Album album) {
-        /*
-         * hint 1: use PreparedStatement's setString() and setLong() methods to
-         * add the album's title and artist id to the SQL query. Leave the AlbumId
-         * blank, as it will be automatically generated by the database.
-         *
-         * hint 2: executeUpdate() returns the number of rows affected by the query.
-         * If the number of rows affected is greater than 0, the album was added.
-         *
-         * Remember to use the `connectionString` instead of hard coding it ;)
-         */
-        return false;
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+
+            bindInsert(statement, album);
+
+            if (statement.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet generated = statement.getGeneratedKeys()) {
+                if (!generated.next()) {
+                    throw new SQLException("The database did not return the id of the new album");
+                }
+                album.setId(generated.getLong(1));
+            }
+            return changed(true);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -78,15 +427,15 @@ public class AlbumDAO {
      * @return true if the album was updated successfully, false otherwise.
      */
     public boolean updateAlbum(Album album) {
-        /*
-         * hint 1: use PreparedStatement's setString() and setLong() methods to
-         * add the album's title and artist id to the SQL query. Do not change the
-         * AlbumId, but use it to identify the album to update.
-         *
-         * Remember to use the `connectionString` instead of hard coding it, otherwise
-         * your tests will be deleting albums from your actual database!
-         */
-        return false;
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+
+            bindUpdate(statement, album);
+
+            return changed(statement.executeUpdate() > 0);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -97,12 +446,406 @@ public class AlbumDAO {
      * @return true if the album was deleted successfully, false otherwise.
      */
     public boolean deleteAlbum(Album album) {
-        /*
-         * See hints for the methods above.
-         *
-         * Remember to use the `connectionString` instead of hard coding it, otherwise
-         * your tetss will be deleting albums from your actual database!
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(DELETE)) {
+
+            bindDelete(statement, album);
+
+            return changed(statement.executeUpdate() > 0);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Deletes the album with the specified id. Unlike deleteAlbum(), this does
+     * not need the Album object, so the album does not have to be read first.
+     *
+     * @param albumId the id of the album to delete.
+     * @return true if the album was deleted, false if there was no such album.
+     */
+    public boolean deleteAlbumById(long albumId) {
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(DELETE)) {
+
+            statement.setLong(1, albumId);
+
+            return changed(statement.executeUpdate() > 0);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Changes the title of an album, but only if the title is still the
+     * expected one. This is a compare-and-set: if someone else has changed the
+     * title after the caller read it, nothing is written and false is returned,
+     * so the caller can read the album again and decide what to do. The check
+     * and the write are one statement, so no other write can happen between
+     * them.
+     *
+     * @param albumId       the id of the album to update.
+     * @param expectedTitle the title the caller believes the album has.
+     * @param newTitle      the new title.
+     * @return true if the title was changed, false if the album does not exist
+     *         or its title was not expectedTitle.
+     */
+    public boolean updateAlbumTitle(long albumId, String expectedTitle, String newTitle) {
+        try (Connection connection = writeConnections.getConnection();
+                PreparedStatement statement = connection.prepareStatement(UPDATE_TITLE_IF)) {
+
+            statement.setString(1, newTitle);
+            statement.setLong(2, albumId);
+            statement.setString(3, expectedTitle);
+
+            return changed(statement.executeUpdate() > 0);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Saves the album with a single statement: an album without an id (a
+     * negative id, such as the -1 of new Album objects) is added and gets a new
+     * id, and an album with an id is inserted or, if that id exists, updated.
+     * The caller does not need to check first whether the album exists.
+     *
+     * The id of the saved album is also stored in the Album object.
+     *
+     * @param album the album to save.
+     * @return the id of the saved album.
+     */
+    public long upsertAlbum(Album album) {
+        try (Connection connection = writeConnections.getConnection();
+                Upsert upsert = new Upsert(connection)) {
+            long id = upsert.save(album);
+            album.setId(id);
+            albumsChanged();
+            return id;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Saves all of the given albums like upsertAlbum() in a single
+     * transaction. If any of them fails, none of the albums are saved and a
+     * RuntimeException is thrown. The ids are stored in the Album objects once
+     * the transaction has been committed.
+     *
+     * The rows are sent one statement at a time, because the id of each new
+     * album is read from the result of its own statement. With SQLite this is
+     * cheap: there is no network round trip and the transaction is written to
+     * the disk only once.
+     *
+     * @param albums the albums to save.
+     * @return the ids of the saved albums, in iteration order.
+     */
+    public List<Long> upsertAlbums(Collection<Album> albums) {
+        List<Long> ids = new ArrayList<>(albums.size());
+        if (albums.isEmpty()) {
+            return ids;
+        }
+
+        try (Connection connection = writeConnections.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (Upsert upsert = new Upsert(connection)) {
+                Map<Album, Long> savedIds = new IdentityHashMap<>();
+                for (Album album : albums) {
+                    long id = upsert.save(album);
+                    ids.add(id);
+                    savedIds.put(album, id);
+                }
+                connection.commit();
+                // Only now, so that a rollback does not leave ids of rows that do not exist
+                savedIds.forEach(Album::setId);
+                albumsChanged();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        return ids;
+    }
+
+    /**
+     * A prepared upsert statement in the dialect of the connection's database.
+     */
+    private static class Upsert implements AutoCloseable {
+
+        private static final Pattern PATCH_VERSION = Pattern.compile("^\\d+\\.\\d+\\.(\\d+)");
+
+        private final boolean returning;
+        private final PreparedStatement statement;
+
+        Upsert(Connection connection) throws SQLException {
+            DatabaseMetaData metaData = connection.getMetaData();
+            boolean sqlite = "SQLite".equalsIgnoreCase(metaData.getDatabaseProductName());
+            if (sqlite && !supportsReturning(metaData)) {
+                throw new SQLException("Upserts need SQLite 3.35 or newer, the database is "
+                        + metaData.getDatabaseProductVersion());
+            }
+            if (!sqlite && !supportsRowAlias(metaData)) {
+                throw new SQLException("Upserts need MySQL 8.0.19 or newer, the database is "
+                        + metaData.getDatabaseProductVersion());
+            }
+
+            this.returning = sqlite;
+            this.statement = sqlite ? connection.prepareStatement(UPSERT_SQLITE)
+                    : connection.prepareStatement(UPSERT_MYSQL, Statement.RETURN_GENERATED_KEYS);
+        }
+
+        private static boolean supportsReturning(DatabaseMetaData metaData) throws SQLException {
+            int major = metaData.getDatabaseMajorVersion();
+            return major > 3 || major == 3 && metaData.getDatabaseMinorVersion() >= 35;
+        }
+
+        private static boolean supportsRowAlias(DatabaseMetaData metaData) throws SQLException {
+            int major = metaData.getDatabaseMajorVersion();
+            int minor = metaData.getDatabaseMinorVersion();
+            if (major != 8 || minor != 0) {
+                return major > 8 || major == 8 && minor > 0;
+            }
+            // The patch version is only in the version string, e.g. "8.0.36"
+            Matcher patch = PATCH_VERSION.matcher(metaData.getDatabaseProductVersion());
+            return patch.find() && Integer.parseInt(patch.group(1)) >= 19;
+        }
+
+        /**
+         * @return the id of the saved album. The Album object is not changed.
          */
-        return false;
+        long save(Album album) throws SQLException {
+            if (album.getId() < 0) {
+                statement.setNull(1, Types.INTEGER);
+            } else {
+                statement.setLong(1, album.getId());
+            }
+            statement.setString(2, album.getTitle());
+            statement.setLong(3, album.getArtistId());
+
+            if (returning) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            }
+
+            statement.executeUpdate();
+            if (album.getId() >= 0) {
+                return album.getId();
+            }
+            try (ResultSet generated = statement.getGeneratedKeys()) {
+                generated.next();
+                return generated.getLong(1);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            statement.close();
+        }
+    }
+
+    /**
+     * Adds all of the given albums to the database in a single transaction. The
+     * ids generated by the database are stored in the Album objects once the
+     * transaction has been committed.
+     *
+     * If any of the inserts fails, none of the albums are added and a
+     * RuntimeException is thrown.
+     *
+     * @param albums the albums to add.
+     * @return one value per album, in iteration order: true if the album was
+     *         added.
+     */
+    public List<Boolean> addAlbums(Collection<Album> albums) {
+        return addAlbums(albums, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Same as addAlbums(Collection), but sends at most batchSize rows to the
+     * database at a time.
+     */
+    public List<Boolean> addAlbums(Collection<Album> albums, int batchSize) {
+        return executeInBatches(albums, batchSize, INSERT, AlbumDAO::bindInsert, true);
+    }
+
+    /**
+     * Updates all of the given albums in a single transaction. Albums that do not
+     * exist in the database are skipped, and false is returned for them.
+     *
+     * @param albums the albums to update.
+     * @return one value per album, in iteration order: true if the album was
+     *         updated.
+     */
+    public List<Boolean> updateAlbums(Collection<Album> albums) {
+        return updateAlbums(albums, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Same as updateAlbums(Collection), but sends at most batchSize rows to the
+     * database at a time.
+     */
+    public List<Boolean> updateAlbums(Collection<Album> albums, int batchSize) {
+        return executeInBatches(albums, batchSize, UPDATE, AlbumDAO::bindUpdate, false);
+    }
+
+    /**
+     * Deletes all of the given albums in a single transaction. Albums that do not
+     * exist in the database are skipped, and false is returned for them.
+     *
+     * @param albums the albums to delete.
+     * @return one value per album, in iteration order: true if the album was
+     *         deleted.
+     */
+    public List<Boolean> deleteAlbums(Collection<Album> albums) {
+        return deleteAlbums(albums, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Same as deleteAlbums(Collection), but sends at most batchSize rows to the
+     * database at a time.
+     */
+    public List<Boolean> deleteAlbums(Collection<Album> albums, int batchSize) {
+        return executeInBatches(albums, batchSize, DELETE, AlbumDAO::bindDelete, false);
+    }
+
+    /**
+     * Runs the given statement once per album using JDBC batches. All batches are
+     * executed in one transaction, so with SQLite the changes are written to disk
+     * once instead of once per row.
+     */
+    private List<Boolean> executeInBatches(Collection<Album> albums, int batchSize, String sql, AlbumBinder binder,
+            boolean storeGeneratedIds) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+        }
+
+        List<Boolean> outcomes = new ArrayList<>(albums.size());
+        if (albums.isEmpty()) {
+            return outcomes;
+        }
+
+        try (Connection connection = writeConnections.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = storeGeneratedIds
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql)) {
+
+                Iterator<Album> remaining = albums.iterator();
+                List<Album> batch = new ArrayList<>(Math.min(batchSize, albums.size()));
+                Map<Album, Long> generatedIds = new IdentityHashMap<>();
+
+                while (remaining.hasNext()) {
+                    batch.clear();
+                    while (remaining.hasNext() && batch.size() < batchSize) {
+                        Album album = remaining.next();
+                        binder.bind(statement, album);
+                        statement.addBatch();
+                        batch.add(album);
+                    }
+
+                    int[] counts = statement.executeBatch();
+                    for (int count : counts) {
+                        outcomes.add(count > 0 || count == Statement.SUCCESS_NO_INFO);
+                    }
+
+                    if (storeGeneratedIds) {
+                        collectGeneratedIds(statement, batch, counts, generatedIds);
+                    }
+                }
+
+                connection.commit();
+                // Only now, so that a rollback does not leave ids of rows that do not exist
+                generatedIds.forEach(Album::setId);
+                changed(outcomes.contains(true));
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        return outcomes;
+    }
+
+    /**
+     * Collects the ids generated for a batch of inserts.
+     *
+     * Drivers such as MySQL's return one key per inserted row. The SQLite driver
+     * only returns the id of the last row of the batch. Because the whole batch
+     * runs inside one write transaction, SQLite assigns the rows consecutive ids
+     * ending at that last id, so the earlier ids can be computed from it. Any
+     * other number of keys can not be matched to the rows, so the batch fails.
+     */
+    private static void collectGeneratedIds(PreparedStatement statement, List<Album> batch, int[] counts,
+            Map<Album, Long> ids) throws SQLException {
+        List<Long> keys = new ArrayList<>(batch.size());
+        try (ResultSet generated = statement.getGeneratedKeys()) {
+            while (generated.next()) {
+                keys.add(generated.getLong(1));
+            }
+        }
+
+        if (keys.size() == batch.size()) {
+            for (int i = 0; i < batch.size(); i++) {
+                ids.put(batch.get(i), keys.get(i));
+            }
+        } else if (keys.size() == 1) {
+            long id = keys.get(0);
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    ids.put(batch.get(i), id--);
+                }
+            }
+        } else {
+            throw new SQLException("Expected 1 or " + batch.size() + " generated keys for a batch of "
+                    + batch.size() + " inserts, the driver returned " + keys.size());
+        }
+    }
+
+    /**
+     * Called after every write that changed the Album table. Subclasses that
+     * keep copies of album data, such as {@link CachingAlbumDAO}, override this
+     * to drop them. Writes that bypass the DAO, including AlbumWriteQueue, do
+     * not call it.
+     */
+    protected void albumsChanged() {
+    }
+
+    private boolean changed(boolean changed) {
+        if (changed) {
+            albumsChanged();
+        }
+        return changed;
+    }
+
+    static void bindInsert(PreparedStatement statement, Album album) throws SQLException {
+        statement.setString(1, album.getTitle());
+        statement.setLong(2, album.getArtistId());
+    }
+
+    static void bindUpdate(PreparedStatement statement, Album album) throws SQLException {
+        statement.setString(1, album.getTitle());
+        statement.setLong(2, album.getArtistId());
+        statement.setLong(3, album.getId());
+    }
+
+    static void bindDelete(PreparedStatement statement, Album album) throws SQLException {
+        statement.setLong(1, album.getId());
+    }
+
+    /**
+     * Sets the parameters of a statement from the fields of an album.
+     */
+    @FunctionalInterface
+    private interface AlbumBinder {
+        void bind(PreparedStatement statement, Album album) throws SQLException;
     }
 }
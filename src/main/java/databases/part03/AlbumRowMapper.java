@@ -0,0 +1,43 @@
+package databases.part03;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import databases.connection.RowMapper;
+
+/**
+ * Creates Album objects from rows with the columns AlbumId, Title and
+ * ArtistId.
+ *
+ * {@link #INSTANCE} looks the columns up by name. Calling resolve() returns a
+ * mapper that reads them by index, which the DAO does once per ResultSet.
+ */
+public class AlbumRowMapper implements RowMapper<Album> {
+
+    public static final AlbumRowMapper INSTANCE = new AlbumRowMapper(-1, -1, -1);
+
+    private final int idColumn;
+    private final int titleColumn;
+    private final int artistIdColumn;
+
+    private AlbumRowMapper(int idColumn, int titleColumn, int artistIdColumn) {
+        this.idColumn = idColumn;
+        this.titleColumn = titleColumn;
+        this.artistIdColumn = artistIdColumn;
+    }
+
+    @Override
+    public Album map(ResultSet resultSet) throws SQLException {
+        if (idColumn < 0) {
+            return resolve(resultSet).map(resultSet);
+        }
+        return new Album(resultSet.getLong(idColumn), resultSet.getString(titleColumn),
+                resultSet.getLong(artistIdColumn));
+    }
+
+    @Override
+    public AlbumRowMapper resolve(ResultSet resultSet) throws SQLException {
+        return new AlbumRowMapper(resultSet.findColumn("AlbumId"), resultSet.findColumn("Title"),
+                resultSet.findColumn("ArtistId"));
+    }
+}
@@ -0,0 +1,330 @@
+package databases.part03;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Funnels all album writes through a single writer thread.
+ *
+ * SQLite allows only one writer at a time. When many threads write at once,
+ * they fight over the database lock and get SQLITE_BUSY errors. With this
+ * queue, callers only put their writes in line and get a CompletableFuture
+ * back. The writer thread collects the queued writes into groups of at most
+ * {@code maxGroupSize} writes, or whatever arrived within {@code maxDelay} of
+ * the first one. It then commits each group in a single transaction. One
+ * commit per group instead of one per write is what keeps the throughput up
+ * under contention.
+ *
+ * Each write runs inside its own savepoint. A failing write only fails its own
+ * future, and the rest of the group is still committed.
+ */
+public class AlbumWriteQueue implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_GROUP_SIZE = 500;
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(5);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    // Returned by execute() when a write did not change any row
+    private static final long NOT_CHANGED = Long.MIN_VALUE;
+
+    private final ConnectionProvider connectionProvider;
+    private final int maxGroupSize;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    // Guards accepting, so that no write can be queued after the writer has seen
+    // that the queue is closed and made its last pass over the queue
+    private final Object acceptingLock = new Object();
+    private volatile boolean accepting = true;
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * Creates a queue with the default group size and delay.
+     */
+    public AlbumWriteQueue(ConnectionProvider connectionProvider) {
+        this(connectionProvider, DEFAULT_MAX_GROUP_SIZE, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * @param connectionProvider the source of the writer's connections.
+     * @param maxGroupSize       the maximum number of writes per transaction.
+     * @param maxDelay           how long the writer waits for more writes after
+     *                           the first write of a group has arrived.
+     */
+    public AlbumWriteQueue(ConnectionProvider connectionProvider, int maxGroupSize, Duration maxDelay) {
+        if (maxGroupSize < 1) {
+            throw new IllegalArgumentException("maxGroupSize must be at least 1, was " + maxGroupSize);
+        }
+        this.connectionProvider = connectionProvider;
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+
+        this.writer = new Thread(this::writeLoop, "album-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the album to be added. When the future completes with true, the
+     * album has been committed and its generated id has been stored in it.
+     */
+    public CompletableFuture<Boolean> addAlbum(Album album) {
+        return enqueue(Operation.ADD, album);
+    }
+
+    /**
+     * Queues the album to be updated. The future completes with false if the
+     * album does not exist.
+     */
+    public CompletableFuture<Boolean> updateAlbum(Album album) {
+        return enqueue(Operation.UPDATE, album);
+    }
+
+    /**
+     * Queues the album to be deleted. The future completes with false if the
+     * album does not exist.
+     */
+    public CompletableFuture<Boolean> deleteAlbum(Album album) {
+        return enqueue(Operation.DELETE, album);
+    }
+
+    private CompletableFuture<Boolean> enqueue(Operation operation, Album album) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        synchronized (acceptingLock) {
+            if (!accepting) {
+                result.completeExceptionally(new IllegalStateException("The write queue has been closed"));
+                return result;
+            }
+            queue.add(new PendingWrite(operation, album, result));
+        }
+        return result;
+    }
+
+    private void stopAccepting() {
+        synchronized (acceptingLock) {
+            accepting = false;
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> group = new ArrayList<>(maxGroupSize);
+        Throwable crash = null;
+
+        try {
+            writeQueued(group);
+        } catch (Throwable t) {
+            crash = t;
+            throw t;
+        } finally {
+            // Nothing runs the writes that are left after the loop has ended, e.g.
+            // because of an Error. Fail them, or their callers would wait forever.
+            stopAccepting();
+            IllegalStateException stopped = new IllegalStateException("The writer thread has stopped", crash);
+            queue.drainTo(group);
+            for (PendingWrite write : group) {
+                write.result().completeExceptionally(stopped);
+            }
+        }
+    }
+
+    /**
+     * Commits the queued writes in groups until the queue is closed and empty.
+     *
+     * @param group the list used for the current group, so that the caller can
+     *              fail its writes if this throws.
+     */
+    private void writeQueued(List<PendingWrite> group) {
+        while (accepting || !queue.isEmpty()) {
+            group.clear();
+            try {
+                PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxGroupSize) {
+                    PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Commit the writes collected so far and the queued ones before exiting
+                stopAccepting();
+            }
+
+            if (!group.isEmpty()) {
+                commitGroup(group);
+            }
+        }
+
+        // Writes that were queued while close() was being called
+        group.clear();
+        queue.drainTo(group);
+        if (!group.isEmpty()) {
+            commitGroup(group);
+        }
+    }
+
+    /**
+     * Runs the group in one transaction and completes the futures of its writes.
+     */
+    private void commitGroup(List<PendingWrite> group) {
+        List<Boolean> results = new ArrayList<>(group.size());
+        List<Long> generatedIds = new ArrayList<>(group.size());
+        List<SQLException> failures = new ArrayList<>(group.size());
+
+        try (Connection connection = connectionProvider.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                for (PendingWrite write : group) {
+                    Savepoint savepoint = connection.setSavepoint();
+                    try {
+                        long generatedId = execute(connection, write);
+                        results.add(generatedId != NOT_CHANGED);
+                        generatedIds.add(generatedId);
+                        failures.add(null);
+                        connection.releaseSavepoint(savepoint);
+                    } catch (SQLException e) {
+                        connection.rollback(savepoint);
+                        results.add(null);
+                        generatedIds.add(null);
+                        failures.add(e);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Nothing was committed, so every write of the group failed
+            for (PendingWrite write : group) {
+                write.result().completeExceptionally(e);
+            }
+            return;
+        }
+
+        commits.increment();
+        writes.add(group.size());
+
+        for (int i = 0; i < group.size(); i++) {
+            if (failures.get(i) == null) {
+                PendingWrite write = group.get(i);
+                // Only now, so that a failed commit does not leave ids of rows that do not exist
+                if (write.operation() == Operation.ADD && results.get(i)) {
+                    write.album().setId(generatedIds.get(i));
+                }
+                write.result().complete(results.get(i));
+            } else {
+                group.get(i).result().completeExceptionally(new RuntimeException(failures.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Runs a single write. The Album object is not changed, the caller stores
+     * the generated id of an added album after the commit.
+     *
+     * @return {@link #NOT_CHANGED} if no row was changed, otherwise the
+     *         generated id of an added album, or the id of the updated or
+     *         deleted album.
+     */
+    private static long execute(Connection connection, PendingWrite write) throws SQLException {
+        Album album = write.album();
+
+        switch (write.operation()) {
+            case ADD:
+                try (PreparedStatement statement = connection.prepareStatement(AlbumDAO.INSERT,
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    AlbumDAO.bindInsert(statement, album);
+                    if (statement.executeUpdate() == 0) {
+                        return NOT_CHANGED;
+                    }
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        if (!keys.next()) {
+                            throw new SQLException("The database did not return the id of the new album");
+                        }
+                        return keys.getLong(1);
+                    }
+                }
+            case UPDATE:
+                try (PreparedStatement statement = connection.prepareStatement(AlbumDAO.UPDATE)) {
+                    AlbumDAO.bindUpdate(statement, album);
+                    return statement.executeUpdate() > 0 ? album.getId() : NOT_CHANGED;
+                }
+            case DELETE:
+                try (PreparedStatement statement = connection.prepareStatement(AlbumDAO.DELETE)) {
+                    AlbumDAO.bindDelete(statement, album);
+                    return statement.executeUpdate() > 0 ? album.getId() : NOT_CHANGED;
+                }
+            default:
+                throw new IllegalStateException("Unknown operation " + write.operation());
+        }
+    }
+
+    /**
+     * @return the number of transactions committed by the writer thread.
+     */
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    /**
+     * @return the number of writes committed by the writer thread.
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * @return the number of writes waiting in the queue.
+     */
+    public int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting new writes and waits until the queued writes have been
+     * committed.
+     */
+    @Override
+    public void close() {
+        stopAccepting();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum Operation {
+        ADD, UPDATE, DELETE
+    }
+
+    private record PendingWrite(Operation operation, Album album, CompletableFuture<Boolean> result) {
+    }
+}
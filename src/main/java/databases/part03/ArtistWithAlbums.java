@@ -0,0 +1,12 @@
+package databases.part03;
+
+import java.util.List;
+
+import databases.part02.Artist;
+
+/**
+ * An artist together with all of their albums, sorted by AlbumId in ascending
+ * order.
+ */
+public record ArtistWithAlbums(Artist artist, List<Album> albums) {
+}
@@ -0,0 +1,99 @@
+package databases.part03;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import databases.async.AsyncRunner;
+import databases.connection.ConnectionPool;
+import databases.part02.Artist;
+
+/**
+ * A non-blocking version of AlbumDAO. Each method runs the corresponding
+ * AlbumDAO method on a virtual thread and returns a CompletableFuture.
+ *
+ * Reads and writes have separate concurrency limits. SQLite only allows one
+ * writer at a time, so by default only one write runs at a time and the others
+ * wait in line instead of fighting over the database lock.
+ */
+public class AsyncAlbumDAO implements AutoCloseable {
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final AlbumDAO albumDAO;
+    private final AsyncRunner reads;
+    private final AsyncRunner writes;
+
+    /**
+     * Creates an async DAO that runs as many reads at a time as the pool has
+     * connections, and one write at a time.
+     */
+    public AsyncAlbumDAO(ConnectionPool pool) {
+        this(new AlbumDAO(pool), pool.getMaxSize(), 1, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param albumDAO       the DAO that runs the actual queries.
+     * @param maxReads       how many reads may run at the same time.
+     * @param maxWrites      how many writes may run at the same time.
+     * @param defaultTimeout the timeout of the methods without a timeout
+     *                       parameter.
+     */
+    public AsyncAlbumDAO(AlbumDAO albumDAO, int maxReads, int maxWrites, Duration defaultTimeout) {
+        this.albumDAO = albumDAO;
+        this.reads = new AsyncRunner(maxReads, defaultTimeout);
+        this.writes = new AsyncRunner(reads, maxWrites);
+    }
+
+    /**
+     * @see AlbumDAO#getAlbumsByArtist(Artist)
+     */
+    public CompletableFuture<List<Album>> getAlbumsByArtist(Artist artist) {
+        return reads.submit(() -> albumDAO.getAlbumsByArtist(artist));
+    }
+
+    public CompletableFuture<List<Album>> getAlbumsByArtist(Artist artist, Duration timeout) {
+        return reads.submit(() -> albumDAO.getAlbumsByArtist(artist), timeout);
+    }
+
+    /**
+     * @see AlbumDAO#addAlbum(Album)
+     */
+    public CompletableFuture<Boolean> addAlbum(Album album) {
+        return writes.submit(() -> albumDAO.addAlbum(album));
+    }
+
+    public CompletableFuture<Boolean> addAlbum(Album album, Duration timeout) {
+        return writes.submit(() -> albumDAO.addAlbum(album), timeout);
+    }
+
+    /**
+     * @see AlbumDAO#updateAlbum(Album)
+     */
+    public CompletableFuture<Boolean> updateAlbum(Album album) {
+        return writes.submit(() -> albumDAO.updateAlbum(album));
+    }
+
+    public CompletableFuture<Boolean> updateAlbum(Album album, Duration timeout) {
+        return writes.submit(() -> albumDAO.updateAlbum(album), timeout);
+    }
+
+    /**
+     * @see AlbumDAO#deleteAlbum(Album)
+     */
+    public CompletableFuture<Boolean> deleteAlbum(Album album) {
+        return writes.submit(() -> albumDAO.deleteAlbum(album));
+    }
+
+    public CompletableFuture<Boolean> deleteAlbum(Album album, Duration timeout) {
+        return writes.submit(() -> albumDAO.deleteAlbum(album), timeout);
+    }
+
+    /**
+     * Stops accepting new calls.
+     */
+    @Override
+    public void close() {
+        reads.close();
+    }
+}
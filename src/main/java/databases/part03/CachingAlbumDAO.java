@@ -0,0 +1,78 @@
+package databases.part03;
+
+import java.util.List;
+import java.util.Set;
+
+import databases.cache.QueryCacheStats;
+import databases.cache.QueryResultCache;
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+
+/**
+ * An AlbumDAO that keeps the results of getAlbumsByArtist() in a
+ * {@link QueryResultCache}, so that listing the albums of a popular artist
+ * only queries the database once. The cache can be shared with a
+ * {@link databases.part02.CachingArtistDAO}.
+ *
+ * Every write made through this DAO invalidates the cached results that read
+ * the Album table. Writes made in any other way, for example through another
+ * AlbumDAO or an AlbumWriteQueue, are not noticed: call
+ * {@link #invalidateAll()} after them.
+ */
+public class CachingAlbumDAO extends AlbumDAO {
+
+    public static final long DEFAULT_RESULT_CACHE_BYTES = 16 * 1024 * 1024;
+
+    private static final Set<String> ALBUM_TABLE = Set.of("Album");
+
+    private final QueryResultCache resultCache;
+
+    /**
+     * Creates a caching DAO with its own result cache of the default size.
+     */
+    public CachingAlbumDAO(ConnectionProvider connectionProvider) {
+        this(connectionProvider, new QueryResultCache(DEFAULT_RESULT_CACHE_BYTES));
+    }
+
+    /**
+     * @param connectionProvider the source of database connections.
+     * @param resultCache        where the query results are kept.
+     */
+    public CachingAlbumDAO(ConnectionProvider connectionProvider, QueryResultCache resultCache) {
+        super(connectionProvider);
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Returns the albums of the artist sorted by AlbumId, from the result cache
+     * if they are cached. The returned list can not be modified.
+     */
+    @Override
+    public List<Album> getAlbumsByArtist(Artist artist) {
+        return resultCache.get(SELECT_BY_ARTIST, List.of(artist.getId()), ALBUM_TABLE, CachingAlbumDAO::weigh,
+                () -> super.getAlbumsByArtist(artist));
+    }
+
+    /**
+     * Estimates the memory used by an Album: a 32 byte object and its title.
+     */
+    static long weigh(Album album) {
+        return 32 + QueryResultCache.stringBytes(album.getTitle());
+    }
+
+    @Override
+    protected void albumsChanged() {
+        resultCache.invalidateTable("Album");
+    }
+
+    /**
+     * Forgets all cached album lists.
+     */
+    public void invalidateAll() {
+        resultCache.invalidateTable("Album");
+    }
+
+    public QueryCacheStats getResultCacheStats() {
+        return resultCache.stats();
+    }
+}
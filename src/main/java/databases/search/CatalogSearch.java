@@ -0,0 +1,44 @@
+package databases.search;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Searches artist names and album titles. The query matches names that
+ * contain it, e.g. "zep" or "led zep" finds "Led Zeppelin". When there are
+ * fewer such matches than the limit, the rest of the results are filled with
+ * fuzzy matches that share most of their three letter sequences (trigrams)
+ * with the query, so that "zepelin" still finds "Led Zeppelin".
+ */
+public interface CatalogSearch {
+
+    /**
+     * @param query the text typed by the user.
+     * @param limit the maximum number of results.
+     * @return the best matches, best first.
+     */
+    List<SearchHit> search(String query, int limit);
+
+    /**
+     * Returns the best search for the database behind the provider: FTS5 for
+     * SQLite, and the in-memory trigram index for other databases such as MySQL.
+     */
+    static CatalogSearch forDatabase(ConnectionProvider connectionProvider) {
+        String product;
+        try (Connection connection = connectionProvider.getConnection()) {
+            product = connection.getMetaData().getDatabaseProductName();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        if ("SQLite".equalsIgnoreCase(product)) {
+            Fts5CatalogSearch search = new Fts5CatalogSearch(connectionProvider);
+            search.install();
+            return search;
+        }
+        return new TrigramCatalogSearch(connectionProvider);
+    }
+}
@@ -0,0 +1,221 @@
+package databases.search;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * A CatalogSearch backed by an SQLite FTS5 table with the trigram tokenizer.
+ *
+ * The table CatalogSearch holds every artist name and album title. Its rowid
+ * tells where the text came from: ArtistId * 2 for artists and AlbumId * 2 + 1
+ * for albums. Triggers on the Artist and Album tables keep it up to date, so
+ * writes made through AlbumDAO, or anything else, are searchable as soon as
+ * they are committed.
+ *
+ * Results are ranked with FTS5's bm25 function, which favours short texts and
+ * rare trigrams.
+ */
+public class Fts5CatalogSearch implements CatalogSearch {
+
+    private static final String CREATE_TABLE = """
+            CREATE VIRTUAL TABLE IF NOT EXISTS CatalogSearch USING fts5(text, tokenize = 'trigram')""";
+
+    private static final String[] CREATE_TRIGGERS = {
+            """
+            CREATE TRIGGER IF NOT EXISTS CatalogSearch_ArtistInsert AFTER INSERT ON Artist
+            WHEN new.Name IS NOT NULL BEGIN
+                INSERT INTO CatalogSearch (rowid, text) VALUES (new.ArtistId * 2, new.Name);
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS CatalogSearch_ArtistDelete AFTER DELETE ON Artist BEGIN
+                DELETE FROM CatalogSearch WHERE rowid = old.ArtistId * 2;
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS CatalogSearch_ArtistUpdate AFTER UPDATE OF ArtistId, Name ON Artist BEGIN
+                DELETE FROM CatalogSearch WHERE rowid = old.ArtistId * 2;
+                INSERT INTO CatalogSearch (rowid, text) SELECT new.ArtistId * 2, new.Name WHERE new.Name IS NOT NULL;
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS CatalogSearch_AlbumInsert AFTER INSERT ON Album BEGIN
+                INSERT INTO CatalogSearch (rowid, text) VALUES (new.AlbumId * 2 + 1, new.Title);
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS CatalogSearch_AlbumDelete AFTER DELETE ON Album BEGIN
+                DELETE FROM CatalogSearch WHERE rowid = old.AlbumId * 2 + 1;
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS CatalogSearch_AlbumUpdate AFTER UPDATE OF AlbumId, Title ON Album BEGIN
+                DELETE FROM CatalogSearch WHERE rowid = old.AlbumId * 2 + 1;
+                INSERT INTO CatalogSearch (rowid, text) VALUES (new.AlbumId * 2 + 1, new.Title);
+            END""" };
+
+    private static final String[] POPULATE = {
+            "DELETE FROM CatalogSearch",
+            "INSERT INTO CatalogSearch (rowid, text) SELECT ArtistId * 2, Name FROM Artist WHERE Name IS NOT NULL",
+            "INSERT INTO CatalogSearch (rowid, text) SELECT AlbumId * 2 + 1, Title FROM Album" };
+
+    private static final String SELECT_MATCHES = """
+            SELECT rowid, text, bm25(CatalogSearch) FROM CatalogSearch
+            WHERE CatalogSearch MATCH ?
+            ORDER BY bm25(CatalogSearch)
+            LIMIT ?""";
+
+    // Trigram indexes cannot match fewer than three characters, so short
+    // queries are matched as prefixes instead
+    private static final String SELECT_PREFIX_MATCHES = """
+            SELECT rowid, text, -length(text) FROM CatalogSearch
+            WHERE text LIKE ? ESCAPE '\\'
+            ORDER BY length(text), text
+            LIMIT ?""";
+
+    private final ConnectionProvider connectionProvider;
+
+    public Fts5CatalogSearch(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Creates the search table and its triggers unless they already exist. A new
+     * table is filled from the Artist and Album tables.
+     */
+    public void install() {
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean exists;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'CatalogSearch'");
+                    ResultSet resultSet = statement.executeQuery()) {
+                exists = resultSet.next();
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(CREATE_TABLE);
+                for (String trigger : CREATE_TRIGGERS) {
+                    statement.executeUpdate(trigger);
+                }
+            }
+
+            if (!exists) {
+                populate(connection);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Refills the search table from the Artist and Album tables, e.g. after they
+     * have been recreated without the triggers.
+     */
+    public void rebuild() {
+        install();
+        try (Connection connection = connectionProvider.getConnection()) {
+            populate(connection);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void populate(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : POPULATE) {
+                statement.executeUpdate(sql);
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    @Override
+    public List<SearchHit> search(String query, int limit) {
+        List<String> terms = Trigrams.terms(query);
+        List<SearchHit> hits = new ArrayList<>();
+        if (terms.isEmpty() || limit < 1) {
+            return hits;
+        }
+
+        List<String> longTerms = terms.stream().filter(term -> term.length() >= Trigrams.MIN_TERM_LENGTH)
+                .toList();
+
+        try (Connection connection = connectionProvider.getConnection()) {
+            if (longTerms.isEmpty()) {
+                String prefix = String.join(" ", terms);
+                runQuery(connection, SELECT_PREFIX_MATCHES, escapeLike(prefix) + "%", limit, hits, new HashSet<>());
+                return hits;
+            }
+
+            // Every term must be contained in the text
+            Set<Long> found = new HashSet<>();
+            runQuery(connection, SELECT_MATCHES, joinQuoted(longTerms, " AND "), limit, hits, found);
+
+            if (hits.size() < limit) {
+                // Any trigram of the terms may match, the more the better
+                Set<String> trigrams = new HashSet<>();
+                for (String term : longTerms) {
+                    trigrams.addAll(Trigrams.of(term));
+                }
+                runQuery(connection, SELECT_MATCHES, joinQuoted(trigrams, " OR "), limit, hits, found);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return hits;
+    }
+
+    /**
+     * Adds the results of the query to the hits, skipping rows that are already
+     * there, until there are {@code limit} hits.
+     */
+    private static void runQuery(Connection connection, String sql, String match, int limit, List<SearchHit> hits,
+            Set<Long> found) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, match);
+            statement.setInt(2, limit + found.size());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next() && hits.size() < limit) {
+                    long rowid = resultSet.getLong(1);
+                    if (!found.add(rowid)) {
+                        continue;
+                    }
+                    SearchHit.Kind kind = (rowid & 1) == 0 ? SearchHit.Kind.ARTIST : SearchHit.Kind.ALBUM;
+                    // bm25() is smaller for better matches
+                    hits.add(new SearchHit(kind, rowid >> 1, resultSet.getString(2), -resultSet.getDouble(3)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Quotes each value as an FTS5 string, so that characters like '*' or '-'
+     * have no special meaning.
+     */
+    private static String joinQuoted(Iterable<String> values, String operator) {
+        StringBuilder match = new StringBuilder();
+        for (String value : values) {
+            if (!match.isEmpty()) {
+                match.append(operator);
+            }
+            match.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return match.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
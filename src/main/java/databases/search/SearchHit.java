@@ -0,0 +1,17 @@
+package databases.search;
+
+/**
+ * One result of a catalog search.
+ *
+ * @param kind  whether the hit is an artist or an album.
+ * @param id    the ArtistId or AlbumId.
+ * @param text  the artist name or album title.
+ * @param score how well the text matches the query, higher is better. Scores
+ *              are only comparable within the results of one search.
+ */
+public record SearchHit(Kind kind, long id, String text, double score) {
+
+    public enum Kind {
+        ARTIST, ALBUM
+    }
+}
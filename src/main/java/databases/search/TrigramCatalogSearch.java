@@ -0,0 +1,183 @@
+package databases.search;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import databases.connection.ConnectionProvider;
+import databases.connection.QueryStreams;
+
+/**
+ * A CatalogSearch that keeps its own trigram index in memory, for databases
+ * without FTS5, such as MySQL.
+ *
+ * The index maps each trigram to the entries whose text contains it. A query
+ * counts, for every entry, how many of the query's trigrams it shares. Entries
+ * that contain all query terms come first, and the rest are ranked by their
+ * Jaccard similarity: shared trigrams divided by the trigrams of the query and
+ * the entry together.
+ *
+ * There are no triggers to keep the index up to date, so call
+ * {@link #refresh()} after the tables have changed.
+ */
+public class TrigramCatalogSearch implements CatalogSearch {
+
+    /**
+     * Fuzzy matches must share at least this fraction of the query's trigrams.
+     */
+    private static final double MIN_SHARED_TRIGRAMS = 0.5;
+
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private final ConnectionProvider connectionProvider;
+    private volatile Index index;
+
+    /**
+     * Creates the search and builds its index from the database.
+     */
+    public TrigramCatalogSearch(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+        refresh();
+    }
+
+    /**
+     * Rebuilds the index from the Artist and Album tables. Searches use the old
+     * index until the new one is complete.
+     */
+    public void refresh() {
+        List<SearchHit> entries = new ArrayList<>();
+
+        try (Connection connection = connectionProvider.getConnection()) {
+            readEntries(connection, "SELECT ArtistId, Name FROM Artist WHERE Name IS NOT NULL",
+                    SearchHit.Kind.ARTIST, entries);
+            readEntries(connection, "SELECT AlbumId, Title FROM Album", SearchHit.Kind.ALBUM, entries);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        index = new Index(entries);
+    }
+
+    private static void readEntries(Connection connection, String sql, SearchHit.Kind kind, List<SearchHit> entries)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    entries.add(new SearchHit(kind, resultSet.getLong(1), resultSet.getString(2), 0));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<SearchHit> search(String query, int limit) {
+        return index.search(Trigrams.terms(query), limit);
+    }
+
+    /**
+     * An immutable snapshot of the entries and their trigram postings.
+     */
+    private static class Index {
+
+        private final SearchHit[] entries;
+        private final String[] lowerCaseTexts;
+        private final int[] trigramCounts;
+        private final Map<String, int[]> postings = new HashMap<>();
+
+        Index(List<SearchHit> entryList) {
+            this.entries = entryList.toArray(new SearchHit[0]);
+            this.lowerCaseTexts = new String[entries.length];
+            this.trigramCounts = new int[entries.length];
+
+            Map<String, List<Integer>> lists = new HashMap<>();
+            for (int entry = 0; entry < entries.length; entry++) {
+                lowerCaseTexts[entry] = entries[entry].text().toLowerCase(Locale.ROOT);
+                Set<String> trigrams = Trigrams.of(lowerCaseTexts[entry]);
+                trigramCounts[entry] = trigrams.size();
+
+                for (String trigram : trigrams) {
+                    lists.computeIfAbsent(trigram, key -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            lists.forEach((trigram, list) -> postings.put(trigram,
+                    list.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        List<SearchHit> search(List<String> terms, int limit) {
+            if (terms.isEmpty() || limit < 1) {
+                return new ArrayList<>();
+            }
+
+            List<String> longTerms = terms.stream().filter(term -> term.length() >= Trigrams.MIN_TERM_LENGTH)
+                    .toList();
+            if (longTerms.isEmpty()) {
+                return prefixSearch(String.join(" ", terms), limit);
+            }
+
+            Set<String> queryTrigrams = new HashSet<>();
+            for (String term : longTerms) {
+                queryTrigrams.addAll(Trigrams.of(term));
+            }
+
+            int[] shared = new int[entries.length];
+            for (String trigram : queryTrigrams) {
+                for (int entry : postings.getOrDefault(trigram, NO_ENTRIES)) {
+                    shared[entry]++;
+                }
+            }
+
+            int minShared = (int) Math.ceil(queryTrigrams.size() * MIN_SHARED_TRIGRAMS);
+            List<SearchHit> hits = new ArrayList<>();
+            for (int entry = 0; entry < entries.length; entry++) {
+                if (shared[entry] < minShared || shared[entry] == 0) {
+                    continue;
+                }
+
+                double similarity = (double) shared[entry]
+                        / (queryTrigrams.size() + trigramCounts[entry] - shared[entry]);
+                // Entries containing every term rank above all fuzzy matches
+                double score = containsAll(lowerCaseTexts[entry], longTerms) ? 1 + similarity : similarity;
+
+                SearchHit hit = entries[entry];
+                hits.add(new SearchHit(hit.kind(), hit.id(), hit.text(), score));
+            }
+
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed());
+            return new ArrayList<>(hits.subList(0, Math.min(limit, hits.size())));
+        }
+
+        private List<SearchHit> prefixSearch(String prefix, int limit) {
+            List<SearchHit> hits = new ArrayList<>();
+            for (int entry = 0; entry < entries.length; entry++) {
+                if (lowerCaseTexts[entry].startsWith(prefix)) {
+                    SearchHit hit = entries[entry];
+                    hits.add(new SearchHit(hit.kind(), hit.id(), hit.text(), -hit.text().length()));
+                }
+            }
+
+            // Shorter texts are closer to the prefix
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed().thenComparing(SearchHit::text));
+            return new ArrayList<>(hits.subList(0, Math.min(limit, hits.size())));
+        }
+
+        private static boolean containsAll(String text, List<String> terms) {
+            for (String term : terms) {
+                if (!text.contains(term)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
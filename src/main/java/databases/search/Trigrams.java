@@ -0,0 +1,48 @@
+package databases.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits search queries into terms and trigrams, i.e. all sequences of three
+ * consecutive characters. Both search implementations use the same rules.
+ */
+final class Trigrams {
+
+    /**
+     * Terms shorter than this have no trigrams and cannot be looked up from a
+     * trigram index.
+     */
+    static final int MIN_TERM_LENGTH = 3;
+
+    private Trigrams() {
+    }
+
+    /**
+     * Splits the query into lower case terms at whitespace.
+     */
+    static List<String> terms(String query) {
+        List<String> terms = new ArrayList<>();
+        for (String term : query.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the distinct trigrams of the given lower case text in the order in
+     * which they first appear.
+     */
+    static Set<String> of(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + MIN_TERM_LENGTH <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + MIN_TERM_LENGTH));
+        }
+        return trigrams;
+    }
+}
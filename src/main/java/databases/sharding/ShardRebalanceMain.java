@@ -0,0 +1,51 @@
+package databases.sharding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Splits SQLite databases into a new set of shards.
+ *
+ * Usage: ShardRebalanceMain target-directory shard-count source-file...
+ *
+ * The source files are either a single Chinook database or the shards of an
+ * earlier run. The new shards are written to target-directory/shard-0.sqlite,
+ * shard-1.sqlite, ... For example:
+ *
+ * ShardRebalanceMain data/shards-4 4 data/Chinook_Sqlite.sqlite
+ *
+ * ShardRebalanceMain data/shards-8 8 data/shards-4/shard-0.sqlite ...
+ * data/shards-4/shard-3.sqlite
+ */
+public class ShardRebalanceMain {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ShardRebalanceMain target-directory shard-count source-file...");
+            System.exit(1);
+        }
+
+        Path directory = Path.of(args[0]);
+        int count = Integer.parseInt(args[1]);
+        List<ConnectionProvider> sources = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            if (!Files.isRegularFile(Path.of(args[i]))) {
+                System.err.println("No such database: " + args[i]);
+                System.exit(1);
+            }
+            sources.add(ConnectionProvider.forUrl("jdbc:sqlite:" + args[i]));
+        }
+
+        Files.createDirectories(directory);
+        ShardRebalancer.Result result = new ShardRebalancer().rebalance(sources,
+                ShardedDAO.sqliteShards(directory, count));
+
+        System.out.printf("Copied %d artists and %d albums into %d shards in %d ms, %.0f rows/s%n", result.artists(),
+                result.albums(), count, result.elapsed().toMillis(), result.rowsPerSecond());
+    }
+}
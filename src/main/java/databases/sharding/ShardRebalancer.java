@@ -0,0 +1,230 @@
+package databases.sharding;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * Copies the artists and albums of one set of shards into another set with a
+ * different number of shards, placing every artist and their albums where a
+ * {@link ShardedDAO} over the new shards looks for them. A single ordinary
+ * Chinook database counts as one shard, so this also splits a database into
+ * shards, or merges shards back into one database.
+ *
+ * The new shards must be empty databases other than the old ones. All rows are
+ * loaded before the indexes are created, and each new shard is written in one
+ * transaction, which is committed only after everything has been copied. The
+ * old shards are not changed; switch the application to the new shards and
+ * delete the old files when the copy has finished. Writes made to the old
+ * shards during the copy are not copied.
+ */
+public class ShardRebalancer {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The number of copied rows.
+     */
+    public record Result(long artists, long albums, Duration elapsed) {
+
+        public double rowsPerSecond() {
+            double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+            return (artists + albums) / seconds;
+        }
+    }
+
+    private final int batchSize;
+
+    public ShardRebalancer() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize the number of rows sent to a new shard at a time.
+     */
+    public ShardRebalancer(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Copies everything from the old shards to the new ones.
+     *
+     * @param from the old shards, in any order.
+     * @param to   the new shards, in the order they will be given to ShardedDAO.
+     * @return the number of copied artists and albums.
+     * @throws IllegalStateException if a new shard already contains data.
+     */
+    public Result rebalance(List<? extends ConnectionProvider> from, List<? extends ConnectionProvider> to) {
+        long start = System.nanoTime();
+        for (ConnectionProvider target : to) {
+            ShardedDAO.createTables(target);
+        }
+
+        List<Target> targets = new ArrayList<>();
+        try {
+            for (ConnectionProvider target : to) {
+                targets.add(new Target(target.getConnection()));
+            }
+            for (Target target : targets) {
+                target.checkEmpty();
+            }
+
+            long artists = 0;
+            long albums = 0;
+            for (ConnectionProvider source : from) {
+                artists += copyArtists(source, targets);
+                albums += copyAlbums(source, targets);
+            }
+
+            for (Target target : targets) {
+                target.commit();
+            }
+            for (ConnectionProvider target : to) {
+                ShardedDAO.createIndexes(target);
+            }
+            return new Result(artists, albums, Duration.ofNanos(System.nanoTime() - start));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (Target target : targets) {
+                target.close();
+            }
+        }
+    }
+
+    private long copyArtists(ConnectionProvider source, List<Target> targets) throws SQLException {
+        long count = 0;
+        try (Connection connection = source.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT ArtistId, Name FROM Artist")) {
+            statement.setFetchSize(batchSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long artistId = resultSet.getLong(1);
+                    targets.get(Math.floorMod(artistId, targets.size())).addArtist(artistId, resultSet.getString(2));
+                    count++;
+                }
+            }
+        }
+        for (Target target : targets) {
+            target.flush();
+        }
+        return count;
+    }
+
+    private long copyAlbums(ConnectionProvider source, List<Target> targets) throws SQLException {
+        long count = 0;
+        try (Connection connection = source.getConnection();
+                PreparedStatement statement = connection
+                        .prepareStatement("SELECT AlbumId, Title, ArtistId FROM Album")) {
+            statement.setFetchSize(batchSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long artistId = resultSet.getLong(3);
+                    targets.get(Math.floorMod(artistId, targets.size())).addAlbum(resultSet.getLong(1),
+                            resultSet.getString(2), artistId);
+                    count++;
+                }
+            }
+        }
+        for (Target target : targets) {
+            target.flush();
+        }
+        return count;
+    }
+
+    /**
+     * A new shard being written: its connection and the pending batches.
+     */
+    private class Target {
+
+        private final Connection connection;
+        private final PreparedStatement insertArtist;
+        private final PreparedStatement insertAlbum;
+        private int pendingArtists;
+        private int pendingAlbums;
+
+        Target(Connection connection) throws SQLException {
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(false);
+                this.insertArtist = connection.prepareStatement("INSERT INTO Artist (ArtistId, Name) VALUES (?, ?)");
+                this.insertAlbum = connection
+                        .prepareStatement("INSERT INTO Album (AlbumId, Title, ArtistId) VALUES (?, ?, ?)");
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void checkEmpty() throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT (SELECT COUNT(*) FROM Artist) + (SELECT COUNT(*) FROM Album)");
+                    ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                if (resultSet.getLong(1) > 0) {
+                    throw new IllegalStateException("The new shards must be empty");
+                }
+            }
+        }
+
+        void addArtist(long artistId, String name) throws SQLException {
+            insertArtist.setLong(1, artistId);
+            insertArtist.setString(2, name);
+            insertArtist.addBatch();
+            if (++pendingArtists == batchSize) {
+                flush();
+            }
+        }
+
+        void addAlbum(long albumId, String title, long artistId) throws SQLException {
+            insertAlbum.setLong(1, albumId);
+            insertAlbum.setString(2, title);
+            insertAlbum.setLong(3, artistId);
+            insertAlbum.addBatch();
+            if (++pendingAlbums == batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (pendingArtists > 0) {
+                insertArtist.executeBatch();
+                pendingArtists = 0;
+            }
+            if (pendingAlbums > 0) {
+                insertAlbum.executeBatch();
+                pendingAlbums = 0;
+            }
+        }
+
+        void commit() throws SQLException {
+            flush();
+            connection.commit();
+        }
+
+        /**
+         * Closes the connection. A transaction that was not committed is rolled
+         * back.
+         */
+        void close() {
+            try (connection) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package databases.sharding;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+
+/**
+ * Spreads the Artist and Album tables over several SQLite databases, called
+ * shards. Each SQLite file has only one writer at a time, so writes to
+ * different shards can run at the same time, and each shard has its own file
+ * to read.
+ *
+ * An artist is stored in shard {@code ArtistId mod shardCount}, and the albums
+ * of an artist are stored in the same shard as the artist. Queries about one
+ * artist therefore go to a single shard. getArtists() queries all shards in
+ * parallel and merges their results, which are already sorted by name.
+ *
+ * Every shard generates its own album ids, so they must not collide with the
+ * ids of the other shards. A new album in shard k gets the smallest free id
+ * above all existing album ids that is k mod shardCount. Existing ids are
+ * left alone, so this holds only if all albums are added through a
+ * ShardedDAO.
+ *
+ * Use {@link ShardRebalancer} to split an existing database into shards or to
+ * change the number of shards.
+ */
+public class ShardedDAO {
+
+    private static final String[] TABLES = {
+            """
+            CREATE TABLE IF NOT EXISTS Artist (
+                ArtistId INTEGER NOT NULL,
+                Name NVARCHAR(120),
+                CONSTRAINT PK_Artist PRIMARY KEY (ArtistId)
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS Album (
+                AlbumId INTEGER NOT NULL,
+                Title NVARCHAR(160) NOT NULL,
+                ArtistId INTEGER NOT NULL,
+                CONSTRAINT PK_Album PRIMARY KEY (AlbumId),
+                FOREIGN KEY (ArtistId) REFERENCES Artist (ArtistId) ON DELETE NO ACTION ON UPDATE NO ACTION
+            )""" };
+
+    /**
+     * Adds an album to a shard with a new id. The id is the smallest number
+     * above both the shard's largest AlbumId and the given lower bound that has
+     * the remainder of the shard. Computing the id in the INSERT makes it one
+     * atomic statement. The parameters are: shard, count, count, count, title,
+     * artist id, lower bound.
+     */
+    private static final String INSERT_WITH_SHARD_ID = """
+            INSERT INTO Album (AlbumId, Title, ArtistId)
+            SELECT base + 1 + ((? - (base + 1)) % ? + ?) % ?, ?, ?
+            FROM (SELECT MAX(COALESCE(MAX(AlbumId), 0), ?) AS base FROM Album)
+            RETURNING AlbumId""";
+
+    /**
+     * Orders artists like {@code ORDER BY Name ASC} in SQLite, which puts NULL
+     * first and compares the UTF-8 bytes of the names. That is the order of the
+     * Unicode code points, which differs from String.compareTo() for characters
+     * outside the Basic Multilingual Plane. Ties are broken by id.
+     */
+    static final Comparator<Artist> NAME_ORDER = Comparator
+            .comparing(Artist::getName, Comparator.nullsFirst(ShardedDAO::compareCodePoints))
+            .thenComparingLong(Artist::getId);
+
+    private final List<ConnectionProvider> shards;
+    private final List<ArtistDAO> artistDAOs = new ArrayList<>();
+    private final List<AlbumDAO> albumDAOs = new ArrayList<>();
+
+    // The largest AlbumId in any shard when the first album was added, -1 before that
+    private long albumIdFloor = -1;
+
+    /**
+     * @param shards the connection providers of the shards. The order matters:
+     *               the same list must be given every time.
+     */
+    public ShardedDAO(List<? extends ConnectionProvider> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.shards = List.copyOf(shards);
+        for (ConnectionProvider shard : shards) {
+            artistDAOs.add(new ArtistDAO(shard));
+            albumDAOs.add(new AlbumDAO(shard));
+        }
+    }
+
+    /**
+     * Returns connection providers for the files shard-0.sqlite,
+     * shard-1.sqlite, ... in the given directory.
+     */
+    public static List<ConnectionProvider> sqliteShards(Path directory, int count) {
+        List<ConnectionProvider> shards = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            shards.add(ConnectionProvider.forUrl("jdbc:sqlite:" + directory.resolve("shard-" + shard + ".sqlite")));
+        }
+        return shards;
+    }
+
+    /**
+     * Creates the tables and indexes in every shard, unless they exist.
+     */
+    public static void install(List<? extends ConnectionProvider> shards) {
+        for (ConnectionProvider shard : shards) {
+            createTables(shard);
+            createIndexes(shard);
+        }
+    }
+
+    static void createTables(ConnectionProvider shard) {
+        try (Connection connection = shard.getConnection();
+                Statement statement = connection.createStatement()) {
+            for (String sql : TABLES) {
+                statement.executeUpdate(sql);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the indexes used by getArtists() and getAlbumsByArtist().
+     */
+    static void createIndexes(ConnectionProvider shard) {
+        new ArtistDAO(shard).createPagingIndex();
+        new AlbumDAO(shard).createPagingIndex();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return the index of the shard that stores the artist and their albums.
+     */
+    public int shardOf(long artistId) {
+        return Math.floorMod(artistId, shards.size());
+    }
+
+    public Artist getArtistById(long id) {
+        return artistDAOs.get(shardOf(id)).getArtistById(id);
+    }
+
+    public List<Album> getAlbumsByArtist(Artist artist) {
+        return albumDAOs.get(shardOf(artist.getId())).getAlbumsByArtist(artist);
+    }
+
+    /**
+     * Returns all artists ordered by name. Every shard is queried on its own
+     * thread, and the sorted results are merged with a k-way merge, which
+     * compares only the first remaining artist of each shard.
+     */
+    public List<Artist> getArtists() {
+        List<Callable<List<Artist>>> queries = new ArrayList<>();
+        for (ArtistDAO artistDAO : artistDAOs) {
+            queries.add(artistDAO::getArtists);
+        }
+        return merge(scatter(queries));
+    }
+
+    /**
+     * Merges lists that are each sorted in NAME_ORDER into one sorted list.
+     */
+    static List<Artist> merge(List<List<Artist>> sortedLists) {
+        int total = sortedLists.stream().mapToInt(List::size).sum();
+        List<Artist> merged = new ArrayList<>(total);
+
+        // Each int[] is {list index, position in the list}
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                Comparator.comparing(head -> sortedLists.get(head[0]).get(head[1]), NAME_ORDER));
+        for (int list = 0; list < sortedLists.size(); list++) {
+            if (!sortedLists.get(list).isEmpty()) {
+                heads.add(new int[] { list, 0 });
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Artist> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(j);
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+            j += Character.charCount(codePointB);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    /**
+     * Adds an album to the shard of its artist. The new id is also stored in the
+     * Album object, like AlbumDAO.addAlbum() does.
+     *
+     * @param album the album to add. Its id is ignored.
+     * @return the id of the new album.
+     */
+    public long addAlbum(Album album) {
+        int shard = shardOf(album.getArtistId());
+        long floor = getAlbumIdFloor();
+
+        try (Connection connection = shards.get(shard).getConnection()) {
+            long id = insert(connection, shard, floor, album);
+            album.setId(id);
+            return id;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds all of the given albums. The albums are grouped by shard, and each
+     * group is added in one transaction on its own thread, so the shards are
+     * written in parallel. If a shard fails, the albums of that shard are not
+     * added, but the other shards may already have committed theirs.
+     *
+     * The new ids are stored in the Album objects when the transaction of their
+     * shard has been committed. After a failure, the albums of the shards that
+     * committed have their new ids, and the others keep their old ones.
+     *
+     * @param albums the albums to add. Their ids are ignored.
+     * @return the ids of the new albums, in iteration order.
+     */
+    public List<Long> addAlbums(Collection<Album> albums) {
+        List<List<Album>> albumsByShard = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            albumsByShard.add(new ArrayList<>());
+        }
+        for (Album album : albums) {
+            albumsByShard.get(shardOf(album.getArtistId())).add(album);
+        }
+
+        long floor = getAlbumIdFloor();
+        List<Callable<List<Long>>> writes = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int target = shard;
+            List<Album> group = albumsByShard.get(shard);
+            writes.add(() -> group.isEmpty() ? List.of() : insertAll(target, floor, group));
+        }
+        List<List<Long>> idsByShard = scatter(writes);
+
+        // Put the ids back into the order of the given albums
+        List<Long> ids = new ArrayList<>(albums.size());
+        int[] next = new int[shards.size()];
+        for (Album album : albums) {
+            int shard = shardOf(album.getArtistId());
+            ids.add(idsByShard.get(shard).get(next[shard]++));
+        }
+        return ids;
+    }
+
+    private List<Long> insertAll(int shard, long floor, List<Album> albums) throws SQLException {
+        List<Long> ids = new ArrayList<>(albums.size());
+        try (Connection connection = shards.get(shard).getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (Album album : albums) {
+                    ids.add(insert(connection, shard, floor, album));
+                }
+                connection.commit();
+                // Only now, so that a rollback does not leave ids of rows that do not exist
+                for (int i = 0; i < albums.size(); i++) {
+                    albums.get(i).setId(ids.get(i));
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        return ids;
+    }
+
+    private long insert(Connection connection, int shard, long floor, Album album) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_WITH_SHARD_ID)) {
+            statement.setInt(1, shard);
+            statement.setInt(2, shards.size());
+            statement.setInt(3, shards.size());
+            statement.setInt(4, shards.size());
+            statement.setString(5, album.getTitle());
+            statement.setLong(6, album.getArtistId());
+            statement.setLong(7, floor);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Returns the largest AlbumId of all shards, reading it on the first call.
+     * New ids are always above it, which keeps them apart from the ids that
+     * existed before.
+     */
+    private synchronized long getAlbumIdFloor() {
+        if (albumIdFloor < 0) {
+            List<Callable<Long>> queries = new ArrayList<>();
+            for (ConnectionProvider shard : shards) {
+                queries.add(() -> maxAlbumId(shard));
+            }
+            albumIdFloor = scatter(queries).stream().mapToLong(Long::longValue).max().orElse(0);
+        }
+        return albumIdFloor;
+    }
+
+    private static long maxAlbumId(ConnectionProvider shard) throws SQLException {
+        try (Connection connection = shard.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT COALESCE(MAX(AlbumId), 0) FROM Album");
+                ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Updates the album in the shard of its artist. If the album was moved to
+     * an artist in another shard, it is first copied into the new shard and then
+     * deleted from the old one. The shards are separate databases, so if the
+     * program stops between the two steps, the album exists in both.
+     *
+     * If the delete fails, or finds that the album has already been removed
+     * from the old shard, the copy is deleted from the new shard and an
+     * IllegalStateException is thrown. If deleting the copy fails too, the
+     * album exists in both shards and the exception says so.
+     *
+     * @return true if the album was updated, false if it does not exist.
+     */
+    public boolean updateAlbum(Album album) {
+        int shard = shardOf(album.getArtistId());
+        if (albumDAOs.get(shard).updateAlbum(album)) {
+            return true;
+        }
+
+        for (int other = 0; other < shards.size(); other++) {
+            if (other != shard && containsAlbum(shards.get(other), album.getId())) {
+                albumDAOs.get(shard).upsertAlbum(album);
+
+                boolean deleted;
+                try {
+                    deleted = albumDAOs.get(other).deleteAlbumById(album.getId());
+                } catch (RuntimeException e) {
+                    throw undoMove(album.getId(), shard, other, "deleting it from the old shard failed", e);
+                }
+                if (!deleted) {
+                    throw undoMove(album.getId(), shard, other, "it was removed from the old shard meanwhile", null);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the copy made by a move that could not be completed.
+     *
+     * @return the exception to throw to the caller of updateAlbum().
+     */
+    private IllegalStateException undoMove(long albumId, int to, int from, String reason, Throwable cause) {
+        String move = "Moving album " + albumId + " from shard " + from + " to shard " + to + " failed: " + reason;
+        try {
+            albumDAOs.get(to).deleteAlbumById(albumId);
+        } catch (RuntimeException e) {
+            IllegalStateException failure = new IllegalStateException(
+                    move + ". Deleting the copy failed too, so the album exists in both shards.", cause);
+            failure.addSuppressed(e);
+            return failure;
+        }
+        return new IllegalStateException(move + ". The copy in the new shard has been deleted.", cause);
+    }
+
+    private static boolean containsAlbum(ConnectionProvider shard, long albumId) {
+        try (Connection connection = shard.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM Album WHERE AlbumId = ?")) {
+            statement.setLong(1, albumId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Deletes the album from the shard of its artist.
+     */
+    public boolean deleteAlbum(Album album) {
+        return albumDAOs.get(shardOf(album.getArtistId())).deleteAlbum(album);
+    }
+
+    /**
+     * Deletes the album with the given id. The shard is not known from the id,
+     * so the delete is sent to all shards in parallel.
+     */
+    public boolean deleteAlbumById(long albumId) {
+        List<Callable<Boolean>> deletes = new ArrayList<>();
+        for (AlbumDAO albumDAO : albumDAOs) {
+            deletes.add(() -> albumDAO.deleteAlbumById(albumId));
+        }
+        return scatter(deletes).contains(true);
+    }
+
+    /**
+     * Runs the tasks on virtual threads and returns their results in the order
+     * of the tasks.
+     */
+    private static <T> List<T> scatter(List<Callable<T>> tasks) {
+        if (tasks.size() == 1) {
+            try {
+                return List.of(tasks.get(0).call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the shards", e);
+        }
+        return results;
+    }
+}
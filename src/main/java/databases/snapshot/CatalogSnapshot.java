@@ -0,0 +1,371 @@
+package databases.snapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import databases.connection.ConnectionProvider;
+import databases.connection.QueryStreams;
+import databases.part02.Artist;
+import databases.part03.Album;
+
+/**
+ * An immutable in-memory copy of the Artist and Album tables, stored column by
+ * column in primitive arrays instead of as Artist and Album objects:
+ *
+ * - The ids are stored in long arrays, so there is no object header or boxed
+ * Long per row.
+ *
+ * - All names and titles are encoded as UTF-8 into one byte array (the string
+ * arena). An int array holds the offset where each string starts.
+ *
+ * - The albums are sorted by ArtistId and AlbumId, so the albums of one artist
+ * are a contiguous range of rows. Another pair of arrays maps each ArtistId to
+ * the start of its range.
+ *
+ * Artist and Album objects are only created when a query returns them. The
+ * snapshot never changes after it has been loaded, so it can be shared by any
+ * number of threads without locking. Use {@link SnapshotCatalog} to replace it
+ * with a fresh copy in the background.
+ */
+public final class CatalogSnapshot {
+
+    private static final String SELECT_ARTISTS = "SELECT ArtistId, Name FROM Artist ORDER BY Name ASC";
+    private static final String SELECT_ALBUMS = """
+            SELECT AlbumId, Title, ArtistId FROM Album
+            ORDER BY ArtistId ASC, AlbumId ASC""";
+
+    // Artists in the same order as ArtistDAO.getArtists(), i.e. by name
+    private final long[] artistIds;
+    private final StringArena artistNames;
+
+    // Artist ids in ascending order, and the row of each id in the arrays above
+    private final long[] sortedArtistIds;
+    private final int[] sortedArtistRows;
+
+    // Albums ordered by ArtistId and AlbumId
+    private final long[] albumIds;
+    private final long[] albumArtistIds;
+    private final StringArena albumTitles;
+
+    // The albums of albumRangeArtistIds[i] are the rows from albumRangeStarts[i]
+    // up to albumRangeStarts[i + 1]
+    private final long[] albumRangeArtistIds;
+    private final int[] albumRangeStarts;
+
+    private final long loadedAt;
+
+    private CatalogSnapshot(long[] artistIds, StringArena artistNames, long[] albumIds, long[] albumArtistIds,
+            StringArena albumTitles, long loadedAt) {
+        this.artistIds = artistIds;
+        this.artistNames = artistNames;
+        this.albumIds = albumIds;
+        this.albumArtistIds = albumArtistIds;
+        this.albumTitles = albumTitles;
+        this.loadedAt = loadedAt;
+
+        // ArtistId is the primary key, so every id is unique and can be mapped back
+        // to its row after sorting
+        this.sortedArtistIds = artistIds.clone();
+        Arrays.sort(sortedArtistIds);
+        this.sortedArtistRows = new int[artistIds.length];
+        for (int row = 0; row < artistIds.length; row++) {
+            sortedArtistRows[Arrays.binarySearch(sortedArtistIds, artistIds[row])] = row;
+        }
+
+        // One range per distinct artist id, plus the end of the last range
+        int ranges = 0;
+        for (int i = 0; i < albumArtistIds.length; i++) {
+            if (i == 0 || albumArtistIds[i] != albumArtistIds[i - 1]) {
+                ranges++;
+            }
+        }
+        this.albumRangeArtistIds = new long[ranges];
+        this.albumRangeStarts = new int[ranges + 1];
+
+        int range = 0;
+        for (int i = 0; i < albumArtistIds.length; i++) {
+            if (i == 0 || albumArtistIds[i] != albumArtistIds[i - 1]) {
+                albumRangeArtistIds[range] = albumArtistIds[i];
+                albumRangeStarts[range] = i;
+                range++;
+            }
+        }
+        albumRangeStarts[ranges] = albumArtistIds.length;
+    }
+
+    /**
+     * Reads both tables from the database and builds a new snapshot. The two
+     * queries run in one transaction, so the snapshot is consistent even if the
+     * tables are being modified at the same time.
+     *
+     * @param connectionProvider the source of the connection.
+     * @return the new snapshot.
+     */
+    public static CatalogSnapshot load(ConnectionProvider connectionProvider) {
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                ArtistColumns artists = loadArtists(connection);
+                AlbumColumns albums = loadAlbums(connection);
+                connection.commit();
+
+                return new CatalogSnapshot(artists.ids.toArray(), artists.names.build(), albums.ids.toArray(),
+                        albums.artistIds.toArray(), albums.titles.build(), System.currentTimeMillis());
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private record ArtistColumns(LongColumn ids, StringArena.Builder names) {
+    }
+
+    private record AlbumColumns(LongColumn ids, LongColumn artistIds, StringArena.Builder titles) {
+    }
+
+    private static ArtistColumns loadArtists(Connection connection) throws SQLException {
+        ArtistColumns columns = new ArtistColumns(new LongColumn(), new StringArena.Builder());
+
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ARTISTS)) {
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int idColumn = resultSet.findColumn("ArtistId");
+                int nameColumn = resultSet.findColumn("Name");
+
+                while (resultSet.next()) {
+                    columns.ids.add(resultSet.getLong(idColumn));
+                    columns.names.add(resultSet.getString(nameColumn));
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static AlbumColumns loadAlbums(Connection connection) throws SQLException {
+        AlbumColumns columns = new AlbumColumns(new LongColumn(), new LongColumn(), new StringArena.Builder());
+
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ALBUMS)) {
+            statement.setFetchSize(QueryStreams.DEFAULT_FETCH_SIZE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int idColumn = resultSet.findColumn("AlbumId");
+                int titleColumn = resultSet.findColumn("Title");
+                int artistIdColumn = resultSet.findColumn("ArtistId");
+
+                while (resultSet.next()) {
+                    columns.ids.add(resultSet.getLong(idColumn));
+                    columns.titles.add(resultSet.getString(titleColumn));
+                    columns.artistIds.add(resultSet.getLong(artistIdColumn));
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Returns all artists ordered by name, like ArtistDAO.getArtists().
+     */
+    public List<Artist> getArtists() {
+        List<Artist> artists = new ArrayList<>(artistIds.length);
+        for (int row = 0; row < artistIds.length; row++) {
+            artists.add(new Artist(artistIds[row], artistNames.get(row)));
+        }
+        return artists;
+    }
+
+    /**
+     * Returns the artist with the specified id, or null if there is none, like
+     * ArtistDAO.getArtistById().
+     */
+    public Artist getArtistById(long id) {
+        int index = Arrays.binarySearch(sortedArtistIds, id);
+        if (index < 0) {
+            return null;
+        }
+        int row = sortedArtistRows[index];
+        return new Artist(artistIds[row], artistNames.get(row));
+    }
+
+    /**
+     * Returns the albums of the artist sorted by AlbumId, like
+     * AlbumDAO.getAlbumsByArtist().
+     */
+    public List<Album> getAlbumsByArtist(Artist artist) {
+        int range = Arrays.binarySearch(albumRangeArtistIds, artist.getId());
+        if (range < 0) {
+            return new ArrayList<>();
+        }
+
+        int start = albumRangeStarts[range];
+        int end = albumRangeStarts[range + 1];
+
+        List<Album> albums = new ArrayList<>(end - start);
+        for (int row = start; row < end; row++) {
+            albums.add(new Album(albumIds[row], albumTitles.get(row), albumArtistIds[row]));
+        }
+        return albums;
+    }
+
+    public int getArtistCount() {
+        return artistIds.length;
+    }
+
+    public int getAlbumCount() {
+        return albumIds.length;
+    }
+
+    /**
+     * @return when the data was read from the database, in epoch milliseconds.
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this snapshot. Each
+     * array costs its elements plus a 16 byte header.
+     */
+    public long estimatedBytes() {
+        return arrayBytes(artistIds.length, 8) + artistNames.estimatedBytes()
+                + arrayBytes(sortedArtistIds.length, 8) + arrayBytes(sortedArtistRows.length, 4)
+                + arrayBytes(albumIds.length, 8) + arrayBytes(albumArtistIds.length, 8)
+                + albumTitles.estimatedBytes()
+                + arrayBytes(albumRangeArtistIds.length, 8) + arrayBytes(albumRangeStarts.length, 4);
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by the same data as
+     * lists of Artist and Album objects. Assumes compressed object pointers:
+     *
+     * - Artist and Album objects are 24 bytes each, plus 4 bytes per list slot.
+     *
+     * - Each String is a 24 byte object and a byte array with a 16 byte header,
+     * one byte per character for Latin-1 text and two for other text.
+     */
+    public long estimatedObjectModelBytes() {
+        long bytes = arrayBytes(artistIds.length, 4) + arrayBytes(albumIds.length, 4);
+        bytes += 24L * (artistIds.length + albumIds.length);
+
+        for (int row = 0; row < artistIds.length; row++) {
+            bytes += stringBytes(artistNames.get(row));
+        }
+        for (int row = 0; row < albumIds.length; row++) {
+            bytes += stringBytes(albumTitles.get(row));
+        }
+        return bytes;
+    }
+
+    static long arrayBytes(long length, int elementSize) {
+        return align(16 + length * elementSize);
+    }
+
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return 24 + arrayBytes(value.length(), latin1 ? 1 : 2);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * A growable long array used while loading.
+     */
+    private static class LongColumn {
+
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Stores many strings in one UTF-8 byte array. The string of row i is the
+     * bytes from offsets[i] up to offsets[i + 1]. Null strings are remembered in
+     * a BitSet.
+     */
+    private static final class StringArena {
+
+        private final byte[] bytes;
+        private final int[] offsets;
+        private final BitSet nulls;
+
+        private StringArena(byte[] bytes, int[] offsets, BitSet nulls) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.nulls = nulls;
+        }
+
+        String get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return new String(bytes, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+        }
+
+        long estimatedBytes() {
+            return arrayBytes(bytes.length, 1) + arrayBytes(offsets.length, 4) + arrayBytes(nulls.size() / 8, 1);
+        }
+
+        static class Builder {
+
+            private byte[] bytes = new byte[4096];
+            private int length;
+            private int[] offsets = new int[256];
+            private int rows;
+            private final BitSet nulls = new BitSet();
+
+            void add(String value) {
+                addOffset();
+                if (value == null) {
+                    nulls.set(rows);
+                } else {
+                    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                    if (length + encoded.length > bytes.length) {
+                        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + encoded.length));
+                    }
+                    System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                    length += encoded.length;
+                }
+                rows++;
+            }
+
+            private void addOffset() {
+                if (rows == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, rows * 2);
+                }
+                offsets[rows] = length;
+            }
+
+            StringArena build() {
+                // The end of the last string
+                addOffset();
+                return new StringArena(Arrays.copyOf(bytes, length), Arrays.copyOf(offsets, rows + 1), nulls);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package databases.snapshot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part03.Album;
+
+/**
+ * Serves the read queries of ArtistDAO and AlbumDAO from a
+ * {@link CatalogSnapshot} and replaces the snapshot with a fresh one from the
+ * database, either on request or periodically in the background.
+ *
+ * A new snapshot is built completely before it replaces the old one, so
+ * readers never see a half loaded catalogue. A reader that is in the middle of
+ * a query keeps using the snapshot it started with. If loading fails, the old
+ * snapshot stays in use and the failure is logged.
+ */
+public class SnapshotCatalog implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(SnapshotCatalog.class.getName());
+
+    private final ConnectionProvider connectionProvider;
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failedRefreshes = new LongAdder();
+
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Creates the catalogue and loads the first snapshot before returning.
+     *
+     * @param connectionProvider the source of the connections used for loading.
+     */
+    public SnapshotCatalog(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+        refresh();
+    }
+
+    /**
+     * @return the snapshot currently in use.
+     */
+    public CatalogSnapshot current() {
+        return current.get();
+    }
+
+    public List<Artist> getArtists() {
+        return current().getArtists();
+    }
+
+    public Artist getArtistById(long id) {
+        return current().getArtistById(id);
+    }
+
+    public List<Album> getAlbumsByArtist(Artist artist) {
+        return current().getAlbumsByArtist(artist);
+    }
+
+    /**
+     * Loads a new snapshot and swaps it in. Runs in the calling thread.
+     */
+    public void refresh() {
+        current.set(CatalogSnapshot.load(connectionProvider));
+        refreshes.increment();
+    }
+
+    /**
+     * Starts refreshing the snapshot every {@code interval} on a background
+     * thread. The next refresh starts {@code interval} after the previous one
+     * has finished.
+     */
+    public synchronized void startBackgroundRefresh(Duration interval) {
+        if (refresher != null) {
+            throw new IllegalStateException("Background refresh has already been started");
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshInBackground, interval.toNanos(), interval.toNanos(),
+                TimeUnit.NANOSECONDS);
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // A scheduled task that throws is never run again, so keep the old snapshot
+            failedRefreshes.increment();
+            log.log(System.Logger.Level.WARNING, "Refreshing the catalog snapshot failed", e);
+        }
+    }
+
+    /**
+     * @return the number of snapshots loaded, including the first one.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return the number of background refreshes that failed.
+     */
+    public long getFailedRefreshCount() {
+        return failedRefreshes.sum();
+    }
+
+    /**
+     * Stops the background refresh. The current snapshot can still be used.
+     */
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package databases.advisor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.connection.ConnectionProvider;
+import databases.metrics.InstrumentedConnectionProvider;
+import databases.metrics.QueryMetrics;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+/**
+ * Checks the query plans of every statement the DAOs run. If a change to a
+ * DAO makes one of its queries scan a whole table or sort its results without
+ * an index, these tests fail.
+ */
+public class DaoQueryPlanTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final ConnectionProvider connections = database.connectionProvider();
+    private final QueryMetrics metrics = new QueryMetrics(Duration.ofHours(1));
+    private final ConnectionProvider recorded = new InstrumentedConnectionProvider(connections, metrics);
+
+    private final ArtistDAO artistDAO = new ArtistDAO(recorded);
+    private final AlbumDAO albumDAO = new AlbumDAO(recorded);
+    private final IndexAdvisor advisor = new IndexAdvisor(connections);
+
+    private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
+    private final Artist pinkFloyd = new Artist(4000, "Pink Floyd");
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Calls every DAO method once and returns the statements they ran.
+     */
+    private Set<String> runAllDaoMethods() {
+        artistDAO.getArtists();
+        artistDAO.getArtistById(3000);
+        artistDAO.forEachArtist(artist -> {
+        });
+        artistDAO.forEachArtistIdAndName((id, name) -> {
+        });
+        artistDAO.getArtistsPage(null, 2);
+        artistDAO.getArtistsPage("Led Zeppelin", 1000, 2);
+
+        albumDAO.getAlbumsByArtist(redHotChiliPeppers);
+        albumDAO.getAlbumsByArtists(List.of(redHotChiliPeppers, pinkFloyd));
+        albumDAO.getArtistsWithAlbums();
+        albumDAO.forEachAlbumByArtist(redHotChiliPeppers, album -> {
+        });
+        albumDAO.forEachAlbumIdAndTitle((id, title) -> {
+        });
+        albumDAO.getAlbumsByArtistPage(redHotChiliPeppers, 9001, 1);
+
+        Album album = new Album("Animals", pinkFloyd.getId());
+        albumDAO.addAlbum(album);
+        albumDAO.updateAlbum(new Album(album.getId(), "Meddle", pinkFloyd.getId()));
+        albumDAO.deleteAlbum(album);
+        albumDAO.upsertAlbum(album);
+        albumDAO.updateAlbumTitle(album.getId(), "Animals", "Meddle");
+        albumDAO.deleteAlbumById(album.getId());
+
+        return metrics.getStatements();
+    }
+
+    @Test
+    void daoQueriesUseIndexes() {
+        artistDAO.createPagingIndex();
+        albumDAO.createPagingIndex();
+
+        assertEquals(List.of(), advisor.check(runAllDaoMethods()));
+    }
+
+    @Test
+    void advisorFindsTheMissingIndexesAndFixesThem() {
+        Set<String> statements = runAllDaoMethods();
+        assertFalse(advisor.check(statements).isEmpty(), "The test schema has no secondary indexes");
+
+        List<IndexProposal> proposals = advisor.propose(statements, false);
+        assertTrue(proposals.contains(new IndexProposal("Album", List.of("ArtistId", "AlbumId"))),
+                "Album.ArtistId should be indexed: " + proposals);
+
+        advisor.apply(proposals);
+        assertEquals(List.of(), advisor.check(statements));
+    }
+}
@@ -0,0 +1,122 @@
+package databases.cdc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.connection.ConnectionProvider;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class AlbumChangeFeedTest {
+
+    // The background poller reads while the test writes, which needs file locking
+    private final TestDatabase database = TestDatabase.createOnDisk();
+
+    private final ConnectionProvider connections = database.connectionProvider();
+    private final AlbumDAO albumDAO = new AlbumDAO(database.url());
+
+    // Every test has its own consumer, so that positions saved by other tests do not matter
+    private final String consumer = "test-" + UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void insertsUpdatesAndDeletesAreDeliveredInOrder() throws Exception {
+        try (AlbumChangeFeed feed = new AlbumChangeFeed(connections, consumer)) {
+            List<AlbumChange> received = new ArrayList<>();
+            feed.addListener(received::addAll);
+
+            // addAlbum() stores the generated id, which the update and delete need
+            Album album = new Album("Animals", 4000);
+            assertTrue(albumDAO.addAlbum(album));
+            assertTrue(album.getId() > 0, "The generated id should be stored in the album");
+            assertTrue(albumDAO.updateAlbum(new Album(album.getId(), "Animals", 1000)));
+            assertTrue(albumDAO.deleteAlbum(album));
+
+            assertEquals(3, feed.poll());
+            assertEquals(0, feed.poll());
+
+            assertEquals(List.of(AlbumChange.Type.INSERT, AlbumChange.Type.UPDATE, AlbumChange.Type.DELETE),
+                    received.stream().map(AlbumChange::type).toList());
+
+            assertEquals(List.of(album.getId(), album.getId(), album.getId()),
+                    received.stream().map(AlbumChange::albumId).toList());
+
+            AlbumChange update = received.get(1);
+            assertEquals(1000, update.artistId());
+            assertEquals(4000, update.previousArtistId());
+
+            assertTrue(received.get(0).sequence() < update.sequence());
+            assertEquals(received.get(2).sequence(), feed.getPosition());
+        }
+    }
+
+    @Test
+    void failedBatchesAreDeliveredAgain() throws Exception {
+        try (AlbumChangeFeed feed = new AlbumChangeFeed(connections, consumer)) {
+            List<AlbumChange> received = new ArrayList<>();
+            int[] calls = { 0 };
+            feed.addListener(changes -> {
+                if (calls[0]++ == 0) {
+                    throw new IllegalStateException("The first delivery fails");
+                }
+                received.addAll(changes);
+            });
+
+            long before = feed.getPosition();
+            albumDAO.addAlbum(new Album("Animals", 4000));
+
+            assertThrows(IllegalStateException.class, feed::poll);
+            assertEquals(before, feed.getPosition());
+
+            assertEquals(1, feed.poll());
+            assertEquals("Animals", received.get(0).title());
+        }
+    }
+
+    @Test
+    void aNewFeedResumesFromTheSavedPosition() throws Exception {
+        try (AlbumChangeFeed feed = new AlbumChangeFeed(connections, consumer)) {
+            albumDAO.addAlbum(new Album("Animals", 4000));
+            feed.poll();
+        }
+
+        albumDAO.addAlbum(new Album("Meddle", 4000));
+
+        try (AlbumChangeFeed feed = new AlbumChangeFeed(connections, consumer)) {
+            List<AlbumChange> received = new ArrayList<>();
+            feed.addListener(received::addAll);
+            feed.poll();
+
+            assertEquals(List.of("Meddle"), received.stream().map(AlbumChange::title).toList());
+        }
+    }
+
+    @Test
+    void backgroundPollingDeliversNewChanges() throws Exception {
+        try (AlbumChangeFeed feed = new AlbumChangeFeed(connections, consumer)) {
+            CountDownLatch delivered = new CountDownLatch(1);
+            feed.addListener(changes -> delivered.countDown());
+            feed.start(Duration.ofMillis(10));
+
+            albumDAO.addAlbum(new Album("Animals", 4000));
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package databases.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class ConnectionPoolTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final ConnectionPool pool = new ConnectionPool(database.connectionProvider(), 2, Duration.ofMillis(200),
+            Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+        database.close();
+    }
+
+    @Test
+    void closedConnectionsAreReturnedToThePool() throws SQLException {
+        Connection connection = pool.getConnection();
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+
+        connection.close();
+        assertTrue(connection.isClosed(), "The borrowed connection should look closed to its user");
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void getConnectionTimesOutWhenAllConnectionsAreInUse() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+            assertEquals(0, pool.getWaitingCount());
+        }
+    }
+
+    @Test
+    void idleConnectionsAreEvictedAfterTheIdleTimeout() throws Exception {
+        try (ConnectionPool shortLived = new ConnectionPool(database.connectionProvider(), 2,
+                Duration.ofMillis(200), Duration.ofMillis(10))) {
+
+            shortLived.getConnection().close();
+            assertEquals(1, shortLived.getIdleCount());
+
+            Thread.sleep(50);
+            shortLived.evictIdleConnections();
+            assertEquals(0, shortLived.getIdleCount());
+        }
+    }
+
+    @Test
+    void sharedPoolIsTheSameForTheSameUrl() {
+        ConnectionPool shared = ConnectionPool.shared(database.url());
+        assertSame(shared, ConnectionPool.shared(database.url()));
+        shared.close();
+    }
+
+    @Test
+    void daosCanShareOnePool() {
+        ArtistDAO artistDAO = new ArtistDAO(pool);
+        AlbumDAO albumDAO = new AlbumDAO(pool);
+
+        Artist rhcp = artistDAO.getArtistById(3000);
+        assertEquals(2, albumDAO.getAlbumsByArtist(rhcp).size());
+
+        assertEquals(0, pool.getActiveCount(), "The DAOs should return every connection they borrow");
+        assertTrue(pool.getIdleCount() >= 1);
+    }
+
+    @Test
+    void repeatedQueriesReusePreparedStatements() {
+        ArtistDAO artistDAO = new ArtistDAO(pool);
+
+        artistDAO.getArtistById(1000);
+        assertEquals(0, pool.getStatementCacheHits());
+        assertEquals(1, pool.getStatementCacheMisses());
+
+        Artist rhcp = artistDAO.getArtistById(3000);
+        assertEquals("Red Hot Chili Peppers", rhcp.getName(), "The cached statement should use the new parameter");
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(1, pool.getStatementCacheMisses());
+    }
+
+    @Test
+    void insertsThatReturnGeneratedKeysAreCachedToo() {
+        AlbumDAO albumDAO = new AlbumDAO(pool);
+
+        Album arrival = new Album("Arrival", 5000);
+        Album voulezVous = new Album("Voulez-Vous", 5000);
+        assertTrue(albumDAO.addAlbum(arrival));
+        assertTrue(albumDAO.addAlbum(voulezVous));
+
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(1, pool.getStatementCacheMisses());
+        assertTrue(arrival.getId() < voulezVous.getId(), "Each insert should return its own generated key");
+    }
+
+    @Test
+    void statementCacheCanBeDisabled() {
+        try (ConnectionPool uncached = new ConnectionPool(database.connectionProvider(), 2,
+                Duration.ofMillis(200), Duration.ofMinutes(1), 0)) {
+
+            ArtistDAO artistDAO = new ArtistDAO(uncached);
+            artistDAO.getArtistById(1000);
+            artistDAO.getArtistById(1000);
+
+            assertEquals(0, uncached.getStatementCacheHits());
+            assertEquals(0, uncached.getStatementCacheMisses());
+        }
+    }
+
+    @Test
+    void unfinishedBatchesAndResultsDoNotReachTheNextUser() throws SQLException {
+        String rename = "UPDATE Artist SET Name = ? WHERE ArtistId = ?";
+        String select = "SELECT Name FROM Artist WHERE ArtistId = ?";
+
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement update = connection.prepareStatement(rename);
+            update.setString(1, "Not ABBA");
+            update.setLong(2, 1000);
+            update.addBatch();
+            update.close();
+
+            PreparedStatement query = connection.prepareStatement(select);
+            query.setLong(1, 1000);
+            ResultSet unread = query.executeQuery();
+            query.close();
+            assertTrue(unread.isClosed(), "Closing the statement should close its result set");
+        }
+
+        try (Connection connection = pool.getConnection();
+                PreparedStatement update = connection.prepareStatement(rename)) {
+            assertEquals(1, pool.getStatementCacheHits());
+            assertEquals(0, update.executeBatch().length, "The abandoned batch should have been cleared");
+        }
+        assertEquals("ABBA", new ArtistDAO(pool).getArtistById(1000).getName());
+    }
+}
@@ -0,0 +1,126 @@
+package databases.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.part02.Artist;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.part03.AsyncAlbumDAO;
+import databases.utils.TestDatabase;
+
+public class ReadWriteRouterTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    // All providers connect to the same test database, but count their connections
+    private final AtomicInteger primaryConnections = new AtomicInteger();
+    private final AtomicInteger replica1Connections = new AtomicInteger();
+    private final AtomicInteger replica2Connections = new AtomicInteger();
+
+    private final ReadWriteRouter router = new ReadWriteRouter(counting(primaryConnections),
+            List.of(counting(replica1Connections), counting(replica2Connections)));
+
+    private final AlbumDAO albumDAO = new AlbumDAO(router);
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    private ConnectionProvider counting(AtomicInteger counter) {
+        return () -> {
+            counter.incrementAndGet();
+            return database.connectionProvider().getConnection();
+        };
+    }
+
+    @Test
+    void readsAreSpreadOverTheReplicas() {
+        for (int i = 0; i < 4; i++) {
+            albumDAO.getAlbumsByArtist(abba);
+        }
+
+        assertEquals(0, primaryConnections.get());
+        assertEquals(2, replica1Connections.get());
+        assertEquals(2, replica2Connections.get());
+    }
+
+    @Test
+    void writesGoToThePrimary() {
+        assertTrue(albumDAO.addAlbum(new Album("Arrival", abba.getId())));
+
+        assertEquals(1, primaryConnections.get());
+        assertEquals(0, replica1Connections.get() + replica2Connections.get());
+    }
+
+    @Test
+    void readYourWritesReadsFromThePrimary() {
+        albumDAO.addAlbum(new Album("Arrival", abba.getId()));
+        List<Album> albums = router.readYourWrites(() -> albumDAO.getAlbumsByArtist(abba));
+
+        assertEquals(1, albums.size());
+        assertEquals(2, primaryConnections.get());
+        assertEquals(0, replica1Connections.get() + replica2Connections.get());
+    }
+
+    @Test
+    void readYourWritesOnlyAffectsItsOwnRouter() {
+        AtomicInteger otherReplicaConnections = new AtomicInteger();
+        ReadWriteRouter other = new ReadWriteRouter(counting(new AtomicInteger()),
+                List.of(counting(otherReplicaConnections)));
+        AlbumDAO otherDAO = new AlbumDAO(other);
+
+        router.readYourWrites(() -> otherDAO.getAlbumsByArtist(abba));
+
+        assertEquals(1, otherReplicaConnections.get());
+    }
+
+    @Test
+    void asyncReadsSubmittedInsideReadYourWritesGoToThePrimary() {
+        try (AsyncAlbumDAO asyncDAO = new AsyncAlbumDAO(albumDAO, 2, 1, Duration.ofSeconds(10))) {
+            CompletableFuture<List<Album>> albums = router.readYourWrites(() -> asyncDAO.getAlbumsByArtist(abba));
+            albums.join();
+        }
+
+        assertEquals(1, primaryConnections.get());
+        assertEquals(0, replica1Connections.get() + replica2Connections.get());
+    }
+
+    @Test
+    void replicaConnectionsAreReadOnly() throws SQLException {
+        try (Connection connection = router.reads().getConnection();
+                Statement statement = connection.createStatement()) {
+            assertThrows(SQLException.class, () -> statement.executeUpdate("DELETE FROM Album"));
+        }
+        assertEquals(3, albumDAO.getAlbumsByArtist(new Artist(3000, "")).size()
+                + albumDAO.getAlbumsByArtist(new Artist(4000, "")).size());
+    }
+
+    @Test
+    void replicaConnectionsAreWritableAgainWhenReturnedToTheirPool() {
+        // One connection, so the write below gets the one the routed read used
+        try (ConnectionPool pool = new ConnectionPool(database.connectionProvider(), 1, Duration.ofSeconds(1),
+                Duration.ofMinutes(1))) {
+            AlbumDAO routed = new AlbumDAO(new ReadWriteRouter(database.connectionProvider(), List.of(pool)));
+            routed.getAlbumsByArtist(abba);
+
+            assertTrue(new AlbumDAO(pool).addAlbum(new Album("Arrival", abba.getId())));
+            assertEquals(1, routed.getAlbumsByArtist(abba).size());
+        }
+    }
+}
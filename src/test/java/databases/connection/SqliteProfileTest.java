@@ -0,0 +1,45 @@
+package databases.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+
+public class SqliteProfileTest {
+
+    /**
+     * An in-memory database, so that the test does not switch any database file
+     * to WAL mode.
+     */
+    private static final String MEMORY_JDBC_URL = "jdbc:sqlite::memory:";
+
+    @Test
+    void profileSettingsAreAppliedWhenTheConnectionIsOpened() throws SQLException {
+        try (Connection connection = SqliteProfile.READ_HEAVY.connections(MEMORY_JDBC_URL).getConnection()) {
+            // 1 = NORMAL, 2 = MEMORY
+            assertEquals(1, readPragma(connection, "synchronous"));
+            assertEquals(2, readPragma(connection, "temp_store"));
+            assertEquals(-65536, readPragma(connection, "cache_size"));
+            assertEquals(5000, readPragma(connection, "busy_timeout"));
+        }
+    }
+
+    @Test
+    void bulkLoadProfileTurnsOffSyncing() throws SQLException {
+        try (Connection connection = SqliteProfile.BULK_LOAD.connections(MEMORY_JDBC_URL).getConnection()) {
+            assertEquals(0, readPragma(connection, "synchronous"));
+        }
+    }
+
+    private static long readPragma(Connection connection, String name) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("PRAGMA " + name)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
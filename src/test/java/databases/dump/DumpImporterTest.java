@@ -0,0 +1,105 @@
+package databases.dump;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class DumpImporterTest {
+
+    private static final Path CHINOOK_DUMP = Path.of("data/Chinook_MySql_AutoIncrementPKs.sql");
+
+    private final TestDatabase database = TestDatabase.create();
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void readerSplitsStatementsAndDropsComments() throws IOException {
+        String script = """
+                \uFEFF/* a header
+                   over two lines; */
+                CREATE TABLE `t` (x INT); -- a comment; with a semicolon
+                INSERT INTO `t` (x) VALUES ('a;b'), ('it''s'), ('\\';');
+                # another comment
+                ;;
+                SELECT 1""";
+
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(script))) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                statements.add(sql);
+            }
+        }
+
+        assertEquals(List.of("CREATE TABLE `t` (x INT)",
+                "INSERT INTO `t` (x) VALUES ('a;b'), ('it''s'), ('\\';')",
+                "SELECT 1"), statements);
+    }
+
+    @Test
+    void insertValuesAreParsedLikeMySqlReadsThem() {
+        InsertStatement insert = InsertStatement
+                .parse("INSERT INTO `Track` (`Name`, `Composer`, `UnitPrice`) VALUES (N'It''s \\\"a\\\"', NULL, 0.99)");
+
+        assertEquals("INSERT INTO Track (Name, Composer, UnitPrice) VALUES (?, ?, ?)", insert.toPreparedSql());
+        assertEquals("It's \"a\"", insert.rows().get(0).get(0));
+        assertNull(insert.rows().get(0).get(1));
+        assertEquals(new BigDecimal("0.99"), insert.rows().get(0).get(2));
+    }
+
+    @Test
+    void importsTheChinookDumpIntoSqlite() throws IOException, SQLException {
+        List<DumpImporter.Progress> reports = new ArrayList<>();
+        DumpImporter.Progress result = new DumpImporter(database.connectionProvider(), 500)
+                .importDump(CHINOOK_DUMP, reports::add);
+
+        assertEquals(15607, result.rows());
+        assertEquals(result.totalBytes(), result.bytesRead());
+        assertTrue(reports.size() > 1, "Progress is reported after every batch");
+        assertEquals(result.rows(), reports.get(reports.size() - 1).rows());
+
+        ArtistDAO artistDAO = new ArtistDAO(database.url());
+        assertEquals(275, artistDAO.getArtists().size());
+        assertEquals(new Artist(1, "AC/DC"), artistDAO.getArtistById(1));
+        assertEquals(2, new AlbumDAO(database.url()).getAlbumsByArtist(artistDAO.getArtistById(1)).size());
+
+        try (Connection connection = database.connectionProvider().getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet indexes = statement.executeQuery(
+                        "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name LIKE 'IFK_%'")) {
+            indexes.next();
+            assertEquals(10, indexes.getInt(1), "The indexes are created after the load");
+        }
+    }
+
+    @Test
+    void importingAgainReplacesTheTables() throws IOException {
+        DumpImporter importer = new DumpImporter(database.connectionProvider());
+        importer.importDump(CHINOOK_DUMP);
+        importer.importDump(CHINOOK_DUMP);
+
+        assertEquals(275, new ArtistDAO(database.url()).getArtists().size());
+    }
+}
@@ -0,0 +1,79 @@
+package databases.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import databases.connection.ConnectionProvider;
+import databases.utils.TestDatabase;
+
+public class CatalogExporterTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final ConnectionProvider connections = database.connectionProvider();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void ndjsonContainsEveryArtistInIdOrder() throws IOException {
+        Path output = directory.resolve("catalog.ndjson");
+        CatalogExporter.Result result = new CatalogExporter(connections, 3).export(output,
+                CatalogExporter.Format.NDJSON, false);
+
+        assertEquals(List.of(
+                "{\"artistId\":1000,\"name\":\"Led Zeppelin\",\"albums\":[]}",
+                "{\"artistId\":2000,\"name\":\"Radiohead\",\"albums\":[]}",
+                "{\"artistId\":3000,\"name\":\"Red Hot Chili Peppers\",\"albums\":["
+                        + "{\"albumId\":9001,\"title\":\"Californication\"},"
+                        + "{\"albumId\":9003,\"title\":\"By the Way\"}]}",
+                "{\"artistId\":4000,\"name\":\"Pink Floyd\",\"albums\":[{\"albumId\":9002,\"title\":\"The Wall\"}]}",
+                "{\"artistId\":5000,\"name\":\"ABBA\",\"albums\":[]}"), Files.readAllLines(output));
+
+        assertEquals(5, result.artists());
+        assertEquals(3, result.albums());
+        assertEquals(Files.size(output), result.bytes());
+    }
+
+    @Test
+    void outputDoesNotDependOnThePartitionCount() throws IOException {
+        Path single = directory.resolve("single.csv");
+        Path parallel = directory.resolve("parallel.csv");
+
+        new CatalogExporter(connections, 1).export(single, CatalogExporter.Format.CSV, false);
+        new CatalogExporter(connections, 8).export(parallel, CatalogExporter.Format.CSV, false);
+
+        assertEquals(Files.readString(single), Files.readString(parallel));
+    }
+
+    @Test
+    void gzippedPartitionsFormOneGzipFile() throws IOException {
+        Path plain = directory.resolve("catalog.csv");
+        Path compressed = directory.resolve("catalog.csv.gz");
+
+        new CatalogExporter(connections, 1).export(plain, CatalogExporter.Format.CSV, false);
+        new CatalogExporter(connections, 4).export(compressed, CatalogExporter.Format.CSV, true);
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            assertEquals(Files.readString(plain), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("ArtistId,Name,AlbumId,Title", Files.readAllLines(plain).get(0));
+        assertEquals("1000,Led Zeppelin,,", Files.readAllLines(plain).get(1));
+    }
+}
@@ -0,0 +1,62 @@
+package databases.mapped;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class CatalogFileTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final ArtistDAO artistDAO = new ArtistDAO(database.url());
+    private final AlbumDAO albumDAO = new AlbumDAO(database.url());
+
+    private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void exportedFileAnswersLikeTheDAOs() throws IOException {
+        Path path = directory.resolve("test.catalog");
+        CatalogFile.export(database.connectionProvider(), path);
+
+        try (CatalogFile catalog = CatalogFile.open(path)) {
+            assertEquals(artistDAO.getArtists(), catalog.getArtists());
+            assertEquals(redHotChiliPeppers, catalog.getArtistById(3000));
+            assertNull(catalog.getArtistById(-1));
+
+            assertEquals(albumDAO.getAlbumsByArtist(redHotChiliPeppers),
+                    catalog.getAlbumsByArtist(redHotChiliPeppers));
+            assertEquals(List.of(), catalog.getAlbumsByArtist(abba));
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path path = directory.resolve("not.catalog");
+        Files.writeString(path, "This is not a catalog file, but it is long enough to have a header.....");
+
+        assertThrows(IOException.class, () -> CatalogFile.open(path));
+    }
+}
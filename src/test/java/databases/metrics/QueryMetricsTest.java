@@ -0,0 +1,104 @@
+package databases.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.part02.ArtistDAO;
+import databases.utils.TestDatabase;
+
+public class QueryMetricsTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final QueryMetrics metrics = new QueryMetrics(Duration.ofHours(1));
+
+    private final ArtistDAO artistDAO = new ArtistDAO(
+            new InstrumentedConnectionProvider(database.connectionProvider(), metrics));
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void daoMethodsAndStatementsAreTimed() {
+        artistDAO.getArtists();
+        artistDAO.getArtists();
+
+        QueryMetrics.Timings method = metrics.forMethod("ArtistDAO.getArtists");
+        assertEquals(2, method.total.getCount());
+        assertEquals(2, method.acquire.getCount());
+        assertEquals(2, method.execute.getCount());
+        assertEquals(2, method.mapping.getCount());
+
+        // There are 5 artists in the test database
+        assertEquals(10, method.rows.sum());
+        assertTrue(method.bytes.sum() > 0);
+
+        QueryMetrics.Timings sql = metrics.forSql("SELECT ArtistId, Name FROM Artist ORDER BY Name ASC");
+        assertEquals(2, sql.total.getCount());
+    }
+
+    @Test
+    void slowQueriesAreCounted() {
+        metrics.setSlowQueryThresholdMillis(0);
+        artistDAO.getArtistById(3000);
+
+        assertEquals(1, metrics.getSlowQueryCount());
+    }
+
+    @Test
+    void metricsCanBeExportedAsPrometheusText() {
+        artistDAO.getArtistById(3000);
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text.contains("dao_method_seconds_count{method=\"ArtistDAO.getArtistById\",phase=\"total\"} 1"),
+                text);
+        assertTrue(text.contains("# TYPE dao_method_rows_total counter\n"), text);
+        assertTrue(text.contains("# TYPE dao_method_bytes_total counter\n"), text);
+        assertTrue(text.contains("# TYPE dao_statement_rows_total counter\n"), text);
+        assertTrue(text.contains("# TYPE dao_statement_bytes_total counter\n"), text);
+    }
+
+    @Test
+    void statementsAreLabelledByIdInsteadOfSql() {
+        artistDAO.getArtistById(3000);
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text.contains("statement=\""), text);
+        assertFalse(text.contains("SELECT"), "SQL should not be used as a label value: " + text);
+
+        String id = metrics.getStatementsById().keySet().iterator().next();
+        assertEquals(12, id.length());
+        assertTrue(metrics.getStatementsById().get(id).startsWith("SELECT"));
+    }
+
+    @Test
+    void parameterListsOfDifferentLengthsShareAnId() {
+        String one = QueryMetrics.normalize("SELECT * FROM Album WHERE ArtistId IN (?)");
+        String two = QueryMetrics.normalize("SELECT * FROM Album WHERE ArtistId IN (?, ?)");
+        String three = QueryMetrics.normalize("SELECT * FROM Album WHERE ArtistId IN (?,?,  ?)");
+
+        assertEquals("SELECT * FROM Album WHERE ArtistId IN (?, ...)", two);
+        assertEquals(two, one);
+        assertEquals(two, three);
+        assertNotEquals(QueryMetrics.statementId(two),
+                QueryMetrics.statementId(QueryMetrics.normalize("SELECT * FROM Album WHERE AlbumId IN (?, ?)")));
+    }
+
+    @Test
+    void nothingIsRecordedWhileDisabled() {
+        metrics.setEnabled(false);
+        artistDAO.getArtists();
+
+        assertNull(metrics.forMethod("ArtistDAO.getArtists"));
+    }
+}
@@ -8,6 +8,7 @@ import java.io.PrintStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
 
 /**
  * This test class tests the JdbcDemoMain class. The class being tested only
@@ -20,7 +21,11 @@ import org.junit.jupiter.api.Test;
  *
  * In the next parts, we will improve the design and make it more reusable and
  * testable.
+ *
+ * System.out is shared by the whole JVM, so this class runs alone, while no
+ * other test classes are running in parallel.
  */
+@Isolated
 public class JdbcDemoMainTest {
 
     // To test the output of the main method, we need to capture the output stream
@@ -3,40 +3,37 @@ package databases.part02;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
-import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
-import databases.utils.TestUtils;
+import databases.paging.Page;
+import databases.utils.TestDatabase;
 
 public class ArtistDAOTest {
 
     /**
-     * The connection string used to connect to the database. Note that this string
-     * is different from the one used in the main() method. This is because the
-     * tests use a different database than the main() method.
+     * Each test gets its own copy of the test database (see TestUtils.initialize()
+     * for its contents). This ensures that each test is independent of the
+     * others, and that the tests never modify the database used by the main()
+     * method.
      */
-    private static final String TEST_JDBC_URL = "jdbc:sqlite:data/Chinook_Sqlite_TEST.sqlite";
+    private final TestDatabase database = TestDatabase.create();
 
     private final Artist rhcp = new Artist(3000, "Red Hot Chili Peppers");
 
     /**
-     * Before each test, we initialize the database to a known state. This ensures
-     * that each test is independent of the others.
+     * The DAO we are testing, connected to the copy of the test database.
      */
-    @BeforeEach
-    void setUp() throws SQLException {
-        TestUtils.initialize(TEST_JDBC_URL);
-    }
+    private ArtistDAO artistDAO = new ArtistDAO(database.url());
 
-    /**
-     * The DAO we are testing. We use a different DAO with a different JDBC_URL for
-     * testing because the other database contains data that we don't want to modify
-     * or delete.
-     */
-    private ArtistDAO artistDAO = new ArtistDAO(TEST_JDBC_URL);
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
 
     @Test
     void getArtistByIdReturnsCorrectArtist() {
@@ -79,4 +76,47 @@ public class ArtistDAOTest {
         List<Artist> expected = List.of(abba, ledZeppelin, pinkFloyd, radiohead, rhcp);
         assertEquals(expected, artists);
     }
+
+    @Test
+    void streamArtistsReturnsTheSameArtistsAsGetArtists() {
+        try (Stream<Artist> artists = artistDAO.streamArtists(2)) {
+            assertEquals(artistDAO.getArtists(), artists.toList());
+        }
+    }
+
+    @Test
+    void forEachArtistPassesEveryArtistToTheConsumer() {
+        List<Artist> visited = new ArrayList<>();
+        artistDAO.forEachArtist(visited::add);
+
+        assertEquals(artistDAO.getArtists(), visited);
+    }
+
+    @Test
+    void forEachArtistIdAndNamePassesTheSameValuesAsGetArtists() {
+        List<Artist> visited = new ArrayList<>();
+        artistDAO.forEachArtistIdAndName((id, name) -> visited.add(new Artist(id, name)));
+
+        assertEquals(artistDAO.getArtists(), visited);
+    }
+
+    @Test
+    void getArtistsPageWalksThroughAllArtistsInNameOrder() {
+        artistDAO.createPagingIndex();
+
+        List<Artist> visited = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+
+        do {
+            Page<Artist> page = artistDAO.getArtistsPage(token, 2);
+            visited.addAll(page.items());
+            token = page.nextPageToken();
+            pages++;
+        } while (token != null);
+
+        // 5 artists with 2 artists per page make 3 pages
+        assertEquals(3, pages);
+        assertEquals(artistDAO.getArtists(), visited);
+    }
 }
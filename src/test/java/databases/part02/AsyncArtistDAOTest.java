@@ -0,0 +1,69 @@
+package databases.part02;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.utils.TestDatabase;
+
+public class AsyncArtistDAOTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist rhcp = new Artist(3000, "Red Hot Chili Peppers");
+
+    private AsyncArtistDAO asyncDAO = new AsyncArtistDAO(new ArtistDAO(database.url()), 2, Duration.ofSeconds(10));
+
+    @AfterEach
+    void tearDown() {
+        asyncDAO.close();
+        database.close();
+    }
+
+    @Test
+    void getArtistByIdCompletesWithTheArtist() {
+        assertEquals(rhcp, asyncDAO.getArtistById(rhcp.getId()).join());
+    }
+
+    @Test
+    void manyConcurrentLookupsAllComplete() {
+        List<CompletableFuture<Artist>> lookups = LongStream.range(0, 200)
+                .mapToObj(i -> asyncDAO.getArtistById(rhcp.getId()))
+                .toList();
+
+        for (CompletableFuture<Artist> lookup : lookups) {
+            assertEquals(rhcp, lookup.join());
+        }
+    }
+
+    @Test
+    void callsTimeOutWhenTheyTakeTooLong() {
+        // A connection provider that is much slower than the timeout
+        ArtistDAO slowDAO = new ArtistDAO(() -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                throw new SQLException("Interrupted", e);
+            }
+            return database.connectionProvider().getConnection();
+        });
+
+        try (AsyncArtistDAO slowAsyncDAO = new AsyncArtistDAO(slowDAO, 1, Duration.ofSeconds(10))) {
+            CompletableFuture<List<Artist>> artists = slowAsyncDAO.getArtists(Duration.ofMillis(50));
+
+            CompletionException e = assertThrows(CompletionException.class, artists::join);
+            assertInstanceOf(TimeoutException.class, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package databases.part02;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.cache.CacheStats;
+import databases.connection.ConnectionProvider;
+import databases.utils.TestDatabase;
+
+public class CachingArtistDAOTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist rhcp = new Artist(3000, "Red Hot Chili Peppers");
+
+    // Counts how many times the DAO actually connects to the database
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final ConnectionProvider countingProvider = () -> {
+        connections.incrementAndGet();
+        return database.connectionProvider().getConnection();
+    };
+
+    private CachingArtistDAO artistDAO = new CachingArtistDAO(countingProvider, 2, Duration.ofMinutes(1),
+            Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void repeatedLookupsAreServedFromTheCache() {
+        assertEquals(rhcp, artistDAO.getArtistById(rhcp.getId()));
+        assertEquals(rhcp, artistDAO.getArtistById(rhcp.getId()));
+
+        assertEquals(1, connections.get(), "Only the first lookup should query the database");
+
+        CacheStats stats = artistDAO.getCacheStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void missingIdsAreCachedToo() {
+        assertNull(artistDAO.getArtistById(-1000L));
+        assertNull(artistDAO.getArtistById(-1000L));
+
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    void invalidatedArtistsAreLoadedAgain() {
+        artistDAO.getArtistById(rhcp.getId());
+        artistDAO.invalidate(rhcp.getId());
+        artistDAO.getArtistById(rhcp.getId());
+
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    void artistsInvalidatedWhileLoadingAreNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        CachingArtistDAO slowDAO = new CachingArtistDAO(() -> {
+            if (connections.incrementAndGet() == 1) {
+                loading.countDown();
+                await(invalidated);
+            }
+            return database.connectionProvider().getConnection();
+        }, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        Thread reader = Thread.ofVirtual().start(() -> slowDAO.getArtistById(rhcp.getId()));
+        await(loading);
+        slowDAO.invalidate(rhcp.getId());
+        invalidated.countDown();
+        reader.join();
+
+        slowDAO.getArtistById(rhcp.getId());
+        assertEquals(2, connections.get(), "The value loaded before the invalidation should not be cached");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedArtistIsEvictedWhenTheCacheIsFull() {
+        artistDAO.getArtistById(1000L);
+        artistDAO.getArtistById(2000L);
+        artistDAO.getArtistById(1000L);
+
+        // The cache holds 2 artists, so this evicts 2000, the least recently used
+        artistDAO.getArtistById(3000L);
+        assertEquals(1, artistDAO.getCacheStats().evictions());
+
+        artistDAO.getArtistById(1000L);
+        assertEquals(3, connections.get(), "Artist 1000 should still be cached");
+
+        artistDAO.getArtistById(2000L);
+        assertEquals(4, connections.get(), "Artist 2000 should have been evicted");
+    }
+}
@@ -3,31 +3,34 @@ package databases.part03;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
-import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import databases.paging.Page;
 import databases.part02.Artist;
-import databases.utils.TestUtils;
+import databases.utils.TestDatabase;
 
 public class AlbumDAOTest {
     /**
-     * The connection string used to connect to the database. Note that this string
-     * is different from the one used in the main() method. This is because the
-     * tests use a different database than the main() method.
+     * Each test gets its own copy of the test database (see TestUtils.initialize()
+     * for its contents). This ensures that each test is independent of the
+     * others, and that the tests never modify the database used by the main()
+     * method.
      */
-    private static final String TEST_JDBC_URL = "jdbc:sqlite:data/Chinook_Sqlite_TEST.sqlite";
+    private final TestDatabase database = TestDatabase.create();
 
     /**
-     * The DAO we are testing. We use a different DAO object with a different
-     * JDBC_URL for testing because the other database contains data that we don't
-     * want to modify or delete.
+     * The DAO we are testing, connected to the copy of the test database.
      */
-    private AlbumDAO albumDAO = new AlbumDAO(TEST_JDBC_URL);
+    private AlbumDAO albumDAO = new AlbumDAO(database.url());
 
     // RHCP has 2 albums in test database (see TestUtils.initialize())
     private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
@@ -37,13 +40,9 @@ public class AlbumDAOTest {
     // ABBA has no albums in test database (see TestUtils.initialize())
     private final Artist abba = new Artist(5000, "ABBA");
 
-    /**
-     * Before each test, we initialize the database to a known state. This ensures
-     * that each test is independent of the others.
-     */
-    @BeforeEach
-    void setUp() throws SQLException {
-        TestUtils.initialize(TEST_JDBC_URL);
+    @AfterEach
+    void tearDown() {
+        database.close();
     }
 
     /**
@@ -64,6 +63,21 @@ public class AlbumDAOTest {
         assertEquals(List.of(rhcpAlbum1, rhcpAlbum2), albums);
     }
 
+    @Test
+    void streamAlbumsByArtistReturnsAlbumsInOrder() {
+        try (Stream<Album> albums = albumDAO.streamAlbumsByArtist(redHotChiliPeppers, 1)) {
+            assertEquals(List.of(rhcpAlbum1, rhcpAlbum2), albums.toList());
+        }
+    }
+
+    @Test
+    void forEachAlbumIdAndTitlePassesEveryAlbumInIdOrder() {
+        List<String> visited = new ArrayList<>();
+        albumDAO.forEachAlbumIdAndTitle((id, title) -> visited.add(id + " " + title));
+
+        assertEquals(List.of("9001 Californication", "9002 The Wall", "9003 By the Way"), visited);
+    }
+
     /**
      * There are no albums for ABBA in the test database.
      */
@@ -163,4 +177,160 @@ public class AlbumDAOTest {
 
         assertFalse(deleted, "The album should not have been deleted and the method should return false");
     }
+
+    @Test
+    void addAlbumsStoresAllAlbumsAndTheirGeneratedIds() {
+        Album arrival = new Album("Arrival", abba.getId());
+        Album voulezVous = new Album("Voulez-Vous", abba.getId());
+        Album theVisitors = new Album("The Visitors", abba.getId());
+
+        // A batch size of 2 makes the albums go to the database in two batches:
+        List<Boolean> outcomes = albumDAO.addAlbums(List.of(arrival, voulezVous, theVisitors), 2);
+        assertEquals(List.of(true, true, true), outcomes);
+
+        List<Album> albums = albumDAO.getAlbumsByArtist(abba);
+        assertEquals(List.of(arrival, voulezVous, theVisitors), albums,
+                "The generated ids should have been stored in the Album objects");
+    }
+
+    @Test
+    void addAlbumStoresTheGeneratedId() {
+        Album arrival = new Album("Arrival", abba.getId());
+
+        assertTrue(albumDAO.addAlbum(arrival));
+
+        assertEquals(List.of(arrival), albumDAO.getAlbumsByArtist(abba),
+                "The generated id should have been stored in the Album object");
+    }
+
+    @Test
+    void addAlbumsLeavesTheIdsUnsetWhenTheTransactionFails() {
+        Album arrival = new Album("Arrival", abba.getId());
+        Album untitled = new Album(null, abba.getId());
+
+        // The first batch succeeds, the second violates NOT NULL and rolls back both
+        assertThrows(RuntimeException.class, () -> albumDAO.addAlbums(List.of(arrival, untitled), 1));
+
+        assertEquals(-1, arrival.getId(), "The album was not added, so it should not have an id");
+        assertEquals(List.of(), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void updateAlbumsReportsWhichAlbumsWereUpdated() {
+        Album remastered = new Album(9001, "Californication remastered", 3000);
+        Album missing = new Album(-1000, "Does not exist", 3000);
+
+        List<Boolean> outcomes = albumDAO.updateAlbums(List.of(remastered, missing));
+
+        assertEquals(List.of(true, false), outcomes);
+        assertEquals(List.of(remastered, rhcpAlbum2), albumDAO.getAlbumsByArtist(redHotChiliPeppers));
+    }
+
+    @Test
+    void deleteAlbumsRemovesAllGivenAlbums() {
+        List<Boolean> outcomes = albumDAO.deleteAlbums(List.of(rhcpAlbum1, rhcpAlbum2));
+
+        assertEquals(List.of(true, true), outcomes);
+        assertTrue(albumDAO.getAlbumsByArtist(redHotChiliPeppers).isEmpty());
+    }
+
+    @Test
+    void upsertAlbumAddsANewAlbumAndStoresItsId() {
+        Album arrival = new Album("Arrival", abba.getId());
+
+        long id = albumDAO.upsertAlbum(arrival);
+
+        assertEquals(id, arrival.getId());
+        assertEquals(List.of(arrival), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void upsertAlbumOverwritesAnExistingAlbum() {
+        Album remastered = new Album(9001, "Californication remastered", 3000);
+
+        assertEquals(9001, albumDAO.upsertAlbum(remastered));
+        assertEquals(List.of(remastered, rhcpAlbum2), albumDAO.getAlbumsByArtist(redHotChiliPeppers));
+    }
+
+    @Test
+    void upsertAlbumsSavesNewAndExistingAlbumsInOneTransaction() {
+        Album remastered = new Album(9003, "By the Way remastered", 3000);
+        Album arrival = new Album("Arrival", abba.getId());
+        Album waterloo = new Album(9100, "Waterloo", abba.getId());
+
+        List<Long> ids = albumDAO.upsertAlbums(List.of(remastered, arrival, waterloo));
+
+        assertEquals(List.of(9003L, arrival.getId(), 9100L), ids);
+        assertEquals(List.of(rhcpAlbum1, remastered), albumDAO.getAlbumsByArtist(redHotChiliPeppers));
+        assertEquals(List.of(arrival, waterloo), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void upsertAlbumsLeavesTheIdsUnsetWhenTheTransactionFails() {
+        Album arrival = new Album("Arrival", abba.getId());
+        Album untitled = new Album(null, abba.getId());
+
+        // The second album violates NOT NULL and rolls back the first one too
+        assertThrows(RuntimeException.class, () -> albumDAO.upsertAlbums(List.of(arrival, untitled)));
+
+        assertEquals(-1, arrival.getId(), "The album was not saved, so it should not have an id");
+        assertEquals(List.of(), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void deleteAlbumByIdNeedsOnlyTheId() {
+        assertTrue(albumDAO.deleteAlbumById(rhcpAlbum1.getId()));
+        assertFalse(albumDAO.deleteAlbumById(rhcpAlbum1.getId()), "The album has already been deleted");
+
+        assertEquals(List.of(rhcpAlbum2), albumDAO.getAlbumsByArtist(redHotChiliPeppers));
+    }
+
+    @Test
+    void updateAlbumTitleOnlyWritesWhenTheTitleIsTheExpectedOne() {
+        assertFalse(albumDAO.updateAlbumTitle(9001, "Something else", "Stadium Arcadium"));
+        assertEquals(List.of(rhcpAlbum1, rhcpAlbum2), albumDAO.getAlbumsByArtist(redHotChiliPeppers));
+
+        assertTrue(albumDAO.updateAlbumTitle(9001, "Californication", "Stadium Arcadium"));
+        assertEquals(List.of(new Album(9001, "Stadium Arcadium", 3000), rhcpAlbum2),
+                albumDAO.getAlbumsByArtist(redHotChiliPeppers));
+    }
+
+    @Test
+    void getAlbumsByArtistsReturnsAlbumsForEachArtist() {
+        Artist pinkFloyd = new Artist(4000, "Pink Floyd");
+
+        Map<Long, List<Album>> albums = albumDAO.getAlbumsByArtists(List.of(redHotChiliPeppers, abba, pinkFloyd));
+
+        assertEquals(List.of(3000L, 5000L, 4000L), List.copyOf(albums.keySet()),
+                "The map should follow the order of the given artists");
+        assertEquals(List.of(rhcpAlbum1, rhcpAlbum2), albums.get(3000L));
+        assertTrue(albums.get(5000L).isEmpty());
+        assertEquals(List.of(new Album(9002, "The Wall", 4000)), albums.get(4000L));
+    }
+
+    @Test
+    void getArtistsWithAlbumsAttachesAlbumsToEveryArtist() {
+        List<ArtistWithAlbums> artists = albumDAO.getArtistsWithAlbums();
+
+        // All 5 artists ordered by name, ABBA first and RHCP last
+        assertEquals(5, artists.size());
+        assertEquals(abba, artists.get(0).artist());
+        assertTrue(artists.get(0).albums().isEmpty());
+
+        assertEquals(redHotChiliPeppers, artists.get(4).artist());
+        assertEquals(List.of(rhcpAlbum1, rhcpAlbum2), artists.get(4).albums());
+    }
+
+    @Test
+    void getAlbumsByArtistPageReturnsOnePageAtATime() {
+        albumDAO.createPagingIndex();
+
+        Page<Album> first = albumDAO.getAlbumsByArtistPage(redHotChiliPeppers, (String) null, 1);
+        assertEquals(List.of(rhcpAlbum1), first.items());
+        assertTrue(first.hasNextPage());
+
+        Page<Album> second = albumDAO.getAlbumsByArtistPage(redHotChiliPeppers, first.nextPageToken(), 1);
+        assertEquals(List.of(rhcpAlbum2), second.items());
+        assertFalse(second.hasNextPage());
+    }
 }
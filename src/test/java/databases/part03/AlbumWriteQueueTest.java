@@ -0,0 +1,140 @@
+package databases.part03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.utils.TestDatabase;
+
+public class AlbumWriteQueueTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    private AlbumDAO albumDAO = new AlbumDAO(database.url());
+
+    // A long delay makes all writes of a test end up in the same group
+    private AlbumWriteQueue writeQueue = new AlbumWriteQueue(database.connectionProvider(), 100,
+            Duration.ofMillis(200));
+
+    @AfterEach
+    void tearDown() {
+        writeQueue.close();
+        database.close();
+    }
+
+    @Test
+    void queuedWritesAreCommittedTogether() {
+        List<Album> albums = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            Album album = new Album("Album " + i, abba.getId());
+            albums.add(album);
+            results.add(writeQueue.addAlbum(album));
+        }
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.join());
+        }
+
+        assertEquals(albums, albumDAO.getAlbumsByArtist(abba), "The generated ids should be stored in the albums");
+        assertEquals(10, writeQueue.getWriteCount());
+        assertTrue(writeQueue.getCommitCount() < 10, "The writes should have been grouped into fewer commits");
+    }
+
+    @Test
+    void eachCallerGetsTheResultOfTheirOwnWrite() {
+        CompletableFuture<Boolean> deleted = writeQueue.deleteAlbum(new Album(9001, "Californication", 3000));
+        CompletableFuture<Boolean> missing = writeQueue.deleteAlbum(new Album(-1000, "Does not exist", -1000));
+
+        assertTrue(deleted.join());
+        assertFalse(missing.join());
+    }
+
+    @Test
+    void everyWriteCompletesWhenTheQueueIsClosedWhileWritesArrive() throws Exception {
+        List<CompletableFuture<Boolean>> results = new CopyOnWriteArrayList<>();
+        Album missing = new Album(-1000, "Does not exist", -1000);
+
+        Thread caller = Thread.ofVirtual().start(() -> {
+            CompletableFuture<Boolean> result;
+            do {
+                result = writeQueue.deleteAlbum(missing);
+                results.add(result);
+                LockSupport.parkNanos(100_000);
+            } while (!result.isCompletedExceptionally());
+        });
+        Thread.sleep(50);
+        writeQueue.close();
+        caller.join();
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.isDone(), "A write queued before close() should be committed, a later one rejected");
+        }
+    }
+
+    @Test
+    void addedAlbumsGetNoIdWhenTheCommitFails() {
+        // Runs every statement on the test database, but fails the commit like SQLITE_BUSY would
+        ConnectionProvider failingCommits = () -> {
+            Connection connection = database.connectionProvider().getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        if (method.getName().equals("commit")) {
+                            throw new SQLException("database is locked");
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        };
+
+        try (AlbumWriteQueue failingQueue = new AlbumWriteQueue(failingCommits, 100, Duration.ofMillis(1))) {
+            Album arrival = new Album("Arrival", abba.getId());
+
+            assertThrows(CompletionException.class, failingQueue.addAlbum(arrival)::join);
+            assertEquals(-1, arrival.getId(), "The album was not committed, so it should not have an id");
+        }
+        assertEquals(List.of(), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void queuedWritesFailWhenTheWriterThreadDies() {
+        ConnectionProvider broken = () -> {
+            throw new AssertionError("Not a SQLException, so it is not handled by the writer");
+        };
+
+        try (AlbumWriteQueue brokenQueue = new AlbumWriteQueue(broken, 100, Duration.ofMillis(1))) {
+            CompletableFuture<Boolean> queued = brokenQueue.addAlbum(new Album("Arrival", abba.getId()));
+
+            CompletionException e = assertThrows(CompletionException.class, queued::join);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+
+            CompletableFuture<Boolean> later = brokenQueue.addAlbum(new Album("Voulez-Vous", abba.getId()));
+            assertThrows(CompletionException.class, later::join);
+        }
+    }
+}
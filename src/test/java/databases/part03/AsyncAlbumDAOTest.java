@@ -0,0 +1,76 @@
+package databases.part03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.part02.Artist;
+import databases.utils.TestDatabase;
+
+public class AsyncAlbumDAOTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    private final AlbumDAO albumDAO = new AlbumDAO(database.connectionProvider());
+    private final AsyncAlbumDAO asyncDAO = new AsyncAlbumDAO(albumDAO, 2, 1, Duration.ofSeconds(10));
+
+    @AfterEach
+    void tearDown() {
+        asyncDAO.close();
+        database.close();
+    }
+
+    @Test
+    void getAlbumsByArtistCompletesWithTheAlbums() {
+        assertEquals(List.of(new Album(9001, "Californication", 3000), new Album(9003, "By the Way", 3000)),
+                asyncDAO.getAlbumsByArtist(redHotChiliPeppers).join());
+    }
+
+    @Test
+    void writesCompleteOneAfterAnother() {
+        Album arrival = new Album("Arrival", abba.getId());
+
+        assertTrue(asyncDAO.addAlbum(arrival).join());
+        Album renamed = new Album(arrival.getId(), "Arrival (Deluxe Edition)", abba.getId());
+        assertTrue(asyncDAO.updateAlbum(renamed).join());
+        assertEquals(List.of(renamed), asyncDAO.getAlbumsByArtist(abba).join());
+
+        assertTrue(asyncDAO.deleteAlbum(renamed).join());
+        assertEquals(List.of(), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void failuresCompleteTheFutureExceptionally() {
+        // Title is NOT NULL, so the insert fails in the database
+        CompletableFuture<Boolean> added = asyncDAO.addAlbum(new Album(null, abba.getId()));
+
+        CompletionException e = assertThrows(CompletionException.class, added::join);
+        assertInstanceOf(SQLException.class, e.getCause().getCause());
+        assertTrue(added.isCompletedExceptionally());
+    }
+
+    @Test
+    void closeFinishesSubmittedCallsAndRejectsNewOnes() {
+        CompletableFuture<List<Album>> submitted = asyncDAO.getAlbumsByArtist(redHotChiliPeppers);
+
+        asyncDAO.close();
+
+        assertEquals(2, submitted.join().size());
+        assertThrows(RejectedExecutionException.class, () -> asyncDAO.getAlbumsByArtist(abba));
+        assertThrows(RejectedExecutionException.class, () -> asyncDAO.addAlbum(new Album("Arrival", abba.getId())));
+    }
+}
@@ -0,0 +1,104 @@
+package databases.part03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.cache.QueryCacheStats;
+import databases.cache.QueryResultCache;
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part02.CachingArtistDAO;
+import databases.utils.TestDatabase;
+
+public class CachingAlbumDAOTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
+    private final Artist pinkFloyd = new Artist(4000, "Pink Floyd");
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    // Counts how many times the DAOs actually connect to the database
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final ConnectionProvider countingProvider = () -> {
+        connections.incrementAndGet();
+        return database.connectionProvider().getConnection();
+    };
+
+    private final QueryResultCache resultCache = new QueryResultCache(1024 * 1024);
+    private final CachingAlbumDAO albumDAO = new CachingAlbumDAO(countingProvider, resultCache);
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void repeatedListingsAreServedFromTheCache() {
+        List<Album> first = albumDAO.getAlbumsByArtist(redHotChiliPeppers);
+        List<Album> second = albumDAO.getAlbumsByArtist(redHotChiliPeppers);
+
+        assertEquals(List.of(new Album(9001, "Californication", 3000), new Album(9003, "By the Way", 3000)), second);
+        assertEquals(first, second);
+        assertEquals(1, connections.get(), "Only the first listing should query the database");
+        assertThrows(UnsupportedOperationException.class, () -> second.add(new Album("Stadium Arcadium", 3000)));
+
+        QueryCacheStats stats = albumDAO.getResultCacheStats();
+        assertEquals(0.5, stats.hitRatio(), 0.001);
+        assertEquals(1, stats.size());
+        assertTrue(stats.bytes() > 0);
+    }
+
+    @Test
+    void writesThroughTheDaoInvalidateTheCachedAlbums() {
+        albumDAO.getAlbumsByArtist(abba);
+
+        Album arrival = new Album("Arrival", abba.getId());
+        albumDAO.upsertAlbum(arrival);
+
+        assertEquals(List.of(arrival), albumDAO.getAlbumsByArtist(abba));
+        assertEquals(1, albumDAO.getResultCacheStats().invalidations());
+
+        albumDAO.deleteAlbumById(arrival.getId());
+        assertEquals(List.of(), albumDAO.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void albumWritesKeepTheCachedArtistsOfASharedCache() {
+        CachingArtistDAO artistDAO = new CachingArtistDAO(countingProvider, resultCache);
+        List<Artist> artists = artistDAO.getArtists();
+        albumDAO.getAlbumsByArtist(redHotChiliPeppers);
+
+        albumDAO.addAlbum(new Album("Stadium Arcadium", redHotChiliPeppers.getId()));
+
+        assertEquals(artists, artistDAO.getArtists());
+        assertEquals(3, albumDAO.getAlbumsByArtist(redHotChiliPeppers).size());
+        assertEquals(4, connections.get(), "Only the album list should have been loaded again");
+    }
+
+    @Test
+    void leastRecentlyUsedResultsAreEvictedToStayWithinTheMemoryLimit() {
+        // Roughly 280 bytes for RHCP's two albums, 100 for none and 180 for one album
+        CachingAlbumDAO smallDAO = new CachingAlbumDAO(countingProvider, new QueryResultCache(500));
+
+        smallDAO.getAlbumsByArtist(redHotChiliPeppers);
+        smallDAO.getAlbumsByArtist(abba);
+        smallDAO.getAlbumsByArtist(redHotChiliPeppers);
+        smallDAO.getAlbumsByArtist(pinkFloyd);
+
+        QueryCacheStats stats = smallDAO.getResultCacheStats();
+        assertEquals(1, stats.evictions(), "ABBA's empty list was used least recently");
+        assertTrue(stats.bytes() <= stats.maxBytes());
+
+        smallDAO.getAlbumsByArtist(redHotChiliPeppers);
+        assertEquals(3, connections.get(), "RHCP's albums should still be cached");
+    }
+}
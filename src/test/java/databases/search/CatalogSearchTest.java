@@ -0,0 +1,90 @@
+package databases.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import databases.connection.ConnectionProvider;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class CatalogSearchTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final ConnectionProvider connections = database.connectionProvider();
+    private final AlbumDAO albumDAO = new AlbumDAO(database.url());
+
+    private final SearchHit.Kind artist = SearchHit.Kind.ARTIST;
+    private final SearchHit.Kind album = SearchHit.Kind.ALBUM;
+
+    private Fts5CatalogSearch fts5Search;
+
+    @BeforeEach
+    void setUp() {
+        // Every test gets a new database, so the search table is created and filled here
+        fts5Search = new Fts5CatalogSearch(connections);
+        fts5Search.install();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    private static List<String> texts(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::text).toList();
+    }
+
+    @Test
+    void fts5FindsNamesContainingTheQuery() {
+        List<SearchHit> hits = fts5Search.search("chili PEP", 10);
+
+        assertEquals(artist, hits.get(0).kind());
+        assertEquals(3000, hits.get(0).id());
+        assertEquals("Red Hot Chili Peppers", hits.get(0).text());
+    }
+
+    @Test
+    void fts5FindsMisspelledNames() {
+        assertEquals("Californication", fts5Search.search("californiaction", 1).get(0).text());
+    }
+
+    @Test
+    void fts5MatchesShortQueriesAsPrefixes() {
+        assertEquals(List.of("Radiohead", "Red Hot Chili Peppers"), texts(fts5Search.search("r", 10)));
+    }
+
+    @Test
+    void albumWritesAreSearchableThroughTheTriggers() {
+        Album arrival = new Album("Arrival", 5000);
+        albumDAO.addAlbum(arrival);
+
+        List<SearchHit> hits = fts5Search.search("arrival", 10);
+        assertEquals(album, hits.get(0).kind());
+        assertEquals(arrival.getId(), hits.get(0).id());
+
+        albumDAO.deleteAlbum(arrival);
+        assertTrue(fts5Search.search("arrival", 10).isEmpty());
+    }
+
+    @Test
+    void trigramSearchFindsTheSameBestMatches() {
+        TrigramCatalogSearch trigramSearch = new TrigramCatalogSearch(connections);
+
+        assertEquals("Red Hot Chili Peppers", trigramSearch.search("chili PEP", 10).get(0).text());
+        assertEquals("Californication", trigramSearch.search("californiaction", 1).get(0).text());
+        assertEquals(List.of("Radiohead", "Red Hot Chili Peppers"), texts(trigramSearch.search("r", 10)));
+    }
+
+    @Test
+    void forDatabaseUsesFts5ForSqlite() {
+        assertTrue(CatalogSearch.forDatabase(connections) instanceof Fts5CatalogSearch);
+    }
+}
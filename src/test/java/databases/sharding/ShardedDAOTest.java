@@ -0,0 +1,177 @@
+package databases.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import databases.connection.ConnectionProvider;
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class ShardedDAOTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
+    private final Artist pinkFloyd = new Artist(4000, "Pink Floyd");
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Splits the test database into the given number of shards.
+     */
+    private List<ConnectionProvider> shard(String name, int count, List<ConnectionProvider> from) throws Exception {
+        Path shardDirectory = Files.createDirectory(directory.resolve(name));
+        List<ConnectionProvider> shards = ShardedDAO.sqliteShards(shardDirectory, count);
+        new ShardRebalancer(2).rebalance(from, shards);
+        return shards;
+    }
+
+    @Test
+    void lookupsGoToTheShardOfTheArtist() throws Exception {
+        List<ConnectionProvider> shards = shard("three", 3, List.of(database.connectionProvider()));
+        ShardedDAO dao = new ShardedDAO(shards);
+
+        // 3000 mod 3 = 0, 4000 mod 3 = 1
+        assertEquals(0, dao.shardOf(redHotChiliPeppers.getId()));
+        assertEquals(redHotChiliPeppers, new ArtistDAO(shards.get(0)).getArtistById(3000));
+        assertNull(new ArtistDAO(shards.get(1)).getArtistById(3000));
+
+        assertEquals(redHotChiliPeppers, dao.getArtistById(3000));
+        assertEquals(List.of(new Album(9001, "Californication", 3000), new Album(9003, "By the Way", 3000)),
+                dao.getAlbumsByArtist(redHotChiliPeppers));
+        assertEquals(List.of(new Album(9002, "The Wall", 4000)),
+                new AlbumDAO(shards.get(1)).getAlbumsByArtist(pinkFloyd));
+    }
+
+    @Test
+    void getArtistsMergesAllShardsInNameOrder() throws Exception {
+        ShardedDAO dao = new ShardedDAO(shard("three", 3, List.of(database.connectionProvider())));
+
+        assertEquals(new ArtistDAO(database.url()).getArtists(), dao.getArtists());
+    }
+
+    @Test
+    void mergeFollowsTheNameOrderOfSqlite() {
+        Artist unnamed = new Artist(7, null);
+        Artist a = new Artist(1, "A");
+        Artist b = new Artist(2, "B");
+        Artist replacementCharacter = new Artist(3, "\uFFFD");
+        Artist musicalNote = new Artist(4, "\uD83C\uDFB5");
+
+        List<Artist> merged = ShardedDAO.merge(List.of(List.of(unnamed, b), List.of(a, musicalNote),
+                List.of(replacementCharacter), List.of()));
+
+        // String.compareTo() would put the musical note (U+1F3B5) before U+FFFD.
+        // Artist.equals() does not accept a null name, so the ids are compared.
+        assertEquals(List.of(7L, 1L, 2L, 3L, 4L), merged.stream().map(Artist::getId).toList());
+    }
+
+    @Test
+    void newAlbumsGetIdsThatNoOtherShardUses() throws Exception {
+        ShardedDAO dao = new ShardedDAO(shard("three", 3, List.of(database.connectionProvider())));
+
+        List<Album> added = List.of(new Album("Arrival", abba.getId()),
+                new Album("Stadium Arcadium", redHotChiliPeppers.getId()),
+                new Album("Animals", pinkFloyd.getId()),
+                new Album("Waterloo", abba.getId()));
+        List<Long> ids = dao.addAlbums(added);
+        Album meddleAlbum = new Album("Meddle", pinkFloyd.getId());
+        long meddle = dao.addAlbum(meddleAlbum);
+
+        assertEquals(ids, added.stream().map(Album::getId).toList(), "The new ids should be stored in the albums");
+        assertEquals(meddle, meddleAlbum.getId());
+
+        assertEquals(5, new HashSet<>(List.of(ids.get(0), ids.get(1), ids.get(2), ids.get(3), meddle)).size());
+        for (long id : ids) {
+            assertTrue(id > 9003, "New ids are above the existing ones");
+        }
+        assertEquals(dao.shardOf(abba.getId()), ids.get(0) % 3);
+        assertEquals(dao.shardOf(redHotChiliPeppers.getId()), ids.get(1) % 3);
+
+        assertEquals(List.of(new Album(ids.get(0), "Arrival", 5000), new Album(ids.get(3), "Waterloo", 5000)),
+                dao.getAlbumsByArtist(abba));
+        assertEquals(List.of(new Album(9002, "The Wall", 4000), new Album(ids.get(2), "Animals", 4000),
+                new Album(meddle, "Meddle", 4000)), dao.getAlbumsByArtist(pinkFloyd));
+    }
+
+    @Test
+    void updatingTheArtistMovesTheAlbumToTheNewShard() throws Exception {
+        ShardedDAO dao = new ShardedDAO(shard("three", 3, List.of(database.connectionProvider())));
+
+        Album moved = new Album(9002, "The Wall", abba.getId());
+        assertTrue(dao.updateAlbum(moved));
+
+        assertEquals(List.of(moved), dao.getAlbumsByArtist(abba));
+        assertEquals(List.of(), dao.getAlbumsByArtist(pinkFloyd));
+        assertFalse(dao.updateAlbum(new Album(-1000, "Does not exist", 5000)));
+
+        assertTrue(dao.deleteAlbumById(9002));
+        assertEquals(List.of(), dao.getAlbumsByArtist(abba));
+    }
+
+    @Test
+    void aMoveWhoseDeleteFailsIsUndone() throws Exception {
+        List<ConnectionProvider> shards = shard("three", 3, List.of(database.connectionProvider()));
+        ShardedDAO dao = new ShardedDAO(shards);
+
+        // Pink Floyd's albums are in shard 1, which now refuses deletes
+        try (Connection connection = shards.get(1).getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                    CREATE TRIGGER NoDeletes BEFORE DELETE ON Album BEGIN
+                        SELECT RAISE(ABORT, 'Album is read-only');
+                    END""");
+        }
+
+        Album moved = new Album(9002, "The Wall", abba.getId());
+        assertThrows(IllegalStateException.class, () -> dao.updateAlbum(moved));
+
+        assertEquals(List.of(), dao.getAlbumsByArtist(abba), "The copy in the new shard should have been deleted");
+        assertEquals(List.of(new Album(9002, "The Wall", 4000)), dao.getAlbumsByArtist(pinkFloyd));
+    }
+
+    @Test
+    void rebalancingToAnotherShardCountKeepsEverything() throws Exception {
+        List<ConnectionProvider> three = shard("three", 3, List.of(database.connectionProvider()));
+        long added = new ShardedDAO(three).addAlbum(new Album("Arrival", abba.getId()));
+
+        List<ConnectionProvider> two = shard("two", 2, three);
+        ShardedDAO dao = new ShardedDAO(two);
+
+        assertEquals(new ArtistDAO(database.url()).getArtists(), dao.getArtists());
+        assertEquals(List.of(new Album(added, "Arrival", 5000)), dao.getAlbumsByArtist(abba));
+        assertEquals(2, dao.getAlbumsByArtist(redHotChiliPeppers).size());
+    }
+
+    @Test
+    void rebalancingRefusesShardsThatContainData() throws Exception {
+        List<ConnectionProvider> three = shard("three", 3, List.of(database.connectionProvider()));
+
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRebalancer().rebalance(List.of(database.connectionProvider()), three));
+    }
+}
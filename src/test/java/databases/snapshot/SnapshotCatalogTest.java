@@ -0,0 +1,68 @@
+package databases.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import databases.part02.Artist;
+import databases.part02.ArtistDAO;
+import databases.part03.Album;
+import databases.part03.AlbumDAO;
+import databases.utils.TestDatabase;
+
+public class SnapshotCatalogTest {
+
+    private final TestDatabase database = TestDatabase.create();
+
+    private final ArtistDAO artistDAO = new ArtistDAO(database.url());
+    private final AlbumDAO albumDAO = new AlbumDAO(database.url());
+
+    private final Artist redHotChiliPeppers = new Artist(3000, "Red Hot Chili Peppers");
+    private final Artist abba = new Artist(5000, "ABBA");
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void snapshotAnswersLikeTheDAOs() {
+        try (SnapshotCatalog catalog = new SnapshotCatalog(database.connectionProvider())) {
+            assertEquals(artistDAO.getArtists(), catalog.getArtists());
+            assertEquals(redHotChiliPeppers, catalog.getArtistById(3000));
+            assertNull(catalog.getArtistById(-1));
+
+            assertEquals(albumDAO.getAlbumsByArtist(redHotChiliPeppers),
+                    catalog.getAlbumsByArtist(redHotChiliPeppers));
+            assertEquals(List.of(), catalog.getAlbumsByArtist(abba));
+        }
+    }
+
+    @Test
+    void refreshSwapsInTheNewData() {
+        try (SnapshotCatalog catalog = new SnapshotCatalog(database.connectionProvider())) {
+            CatalogSnapshot before = catalog.current();
+
+            albumDAO.addAlbum(new Album("Arrival", abba.getId()));
+            catalog.refresh();
+
+            assertEquals(0, before.getAlbumsByArtist(abba).size(), "An old snapshot never changes");
+            assertEquals(albumDAO.getAlbumsByArtist(abba), catalog.getAlbumsByArtist(abba));
+            assertEquals(2, catalog.getRefreshCount());
+        }
+    }
+
+    @Test
+    void snapshotIsSmallerThanTheObjectModel() {
+        CatalogSnapshot snapshot = CatalogSnapshot.load(database.connectionProvider());
+
+        assertEquals(5, snapshot.getArtistCount());
+        assertEquals(3, snapshot.getAlbumCount());
+        assertTrue(snapshot.estimatedBytes() < snapshot.estimatedObjectModelBytes());
+    }
+}
@@ -0,0 +1,30 @@
+package databases.utils;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+
+/**
+ * Prints the wall-clock time of the whole test run and the time spent on
+ * creating {@link TestDatabase}s, so the effect of changes to the test
+ * fixtures can be compared between runs. JUnit finds the listener through
+ * META-INF/services/org.junit.platform.launcher.TestExecutionListener.
+ */
+public class SuiteTimingListener implements TestExecutionListener {
+
+    private long start;
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        System.out.printf("Test suite finished in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        String statistics = TestDatabase.statistics();
+        if (statistics != null) {
+            System.out.println(statistics);
+        }
+    }
+}
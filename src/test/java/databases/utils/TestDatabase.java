@@ -0,0 +1,189 @@
+package databases.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import databases.connection.ConnectionProvider;
+
+/**
+ * A private in-memory copy of the test database for a single test. This is a
+ * faster alternative to {@link TestUtils#initialize(String)}, which drops and
+ * recreates the tables of a database file on the disk before every test.
+ *
+ * The schema and the test data are created only once per JVM, in an in-memory
+ * template that is then written to a temporary file with VACUUM INTO. Each
+ * call to {@link #create()} opens a new in-memory database with a unique name
+ * and copies the template into it with the SQLite backup API. Because no two
+ * tests share a database, the tests that use this class can also be run in
+ * parallel.
+ *
+ * An in-memory database disappears when its last connection is closed. The
+ * object keeps one connection open until {@link #close()}, so the DAOs can
+ * open and close their own connections with {@link #url()} as usual:
+ *
+ * <pre>
+ * private final TestDatabase database = TestDatabase.create();
+ * private final ArtistDAO artistDAO = new ArtistDAO(database.url());
+ *
+ * &#64;AfterEach
+ * void tearDown() {
+ *     database.close();
+ * }
+ * </pre>
+ *
+ * The connections of a shared-cache database lock whole tables, and a write to
+ * a table that another connection is reading fails at once with SQLITE_LOCKED
+ * instead of waiting. Tests that read and write from several threads at the
+ * same time should use {@link #createOnDisk()}, which copies the template to a
+ * temporary file and gets the usual file locking.
+ */
+public class TestDatabase implements AutoCloseable {
+
+    private static final AtomicLong databaseNumbers = new AtomicLong();
+    private static final LongAdder clones = new LongAdder();
+    private static final LongAdder cloneNanos = new LongAdder();
+
+    private final String url;
+    private final Connection keepAlive;
+    private final Path file;
+
+    private TestDatabase(String url, Connection keepAlive, Path file) {
+        this.url = url;
+        this.keepAlive = keepAlive;
+        this.file = file;
+    }
+
+    /**
+     * Creates a new database that contains the same artists and albums as
+     * {@link TestUtils#initialize(String)}.
+     */
+    public static TestDatabase create() {
+        Path template = Template.FILE;
+        long start = System.nanoTime();
+
+        String url = "jdbc:sqlite:file:test-" + databaseNumbers.incrementAndGet() + "?mode=memory&cache=shared";
+        try {
+            Connection connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                // "restore from" is an extension of the SQLite JDBC driver that runs the backup API
+                statement.executeUpdate("restore from '" + template + "'");
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+
+            clones.increment();
+            cloneNanos.add(System.nanoTime() - start);
+            return new TestDatabase(url, connection, null);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a new database in a temporary file, for tests that read and
+     * write concurrently. The file is deleted by {@link #close()}.
+     */
+    public static TestDatabase createOnDisk() {
+        Path template = Template.FILE;
+        long start = System.nanoTime();
+
+        try {
+            Path file = Files.createTempFile("chinook-test", ".sqlite");
+            Files.copy(template, file, StandardCopyOption.REPLACE_EXISTING);
+
+            clones.increment();
+            cloneNanos.add(System.nanoTime() - start);
+            return new TestDatabase("jdbc:sqlite:" + file, null, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the JDBC URL of this database, valid until the database is closed.
+     */
+    public String url() {
+        return url;
+    }
+
+    public ConnectionProvider connectionProvider() {
+        return ConnectionProvider.forUrl(url);
+    }
+
+    /**
+     * Closes the last connection, which frees the database, or deletes the file
+     * of a database created with {@link #createOnDisk()}.
+     */
+    @Override
+    public void close() {
+        try {
+            if (keepAlive != null) {
+                keepAlive.close();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+                // The journal of the last transaction, if one was left behind
+                Files.deleteIfExists(Path.of(file + "-journal"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a one line summary of the time spent on building the template
+     *         and copying it, or null if no databases have been created.
+     */
+    static String statistics() {
+        long count = clones.sum();
+        if (count == 0) {
+            return null;
+        }
+        return String.format("Test databases: template built in %.1f ms, %d copies in %.1f ms (%.0f µs each)",
+                Template.buildNanos / 1e6, count, cloneNanos.sum() / 1e6, cloneNanos.sum() / 1e3 / count);
+    }
+
+    /**
+     * Builds the template the first time it is needed. The JVM initializes the
+     * class only once, even if several tests ask for it at the same time.
+     */
+    private static class Template {
+
+        static final long buildNanos;
+        static final Path FILE;
+
+        static {
+            long start = System.nanoTime();
+            try {
+                Path directory = Files.createTempDirectory("chinook-test");
+                FILE = directory.resolve("template.sqlite");
+                directory.toFile().deleteOnExit();
+                FILE.toFile().deleteOnExit();
+
+                try (Connection connection = DriverManager
+                        .getConnection("jdbc:sqlite:file:template?mode=memory&cache=shared");
+                        Statement statement = connection.createStatement()) {
+                    TestUtils.initialize(connection);
+                    statement.executeUpdate("VACUUM INTO '" + FILE + "'");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            buildNanos = System.nanoTime() - start;
+        }
+    }
+}
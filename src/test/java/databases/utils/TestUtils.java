@@ -2,16 +2,17 @@ package databases.utils;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.stream.Stream;
 
 /**
- * Utility class for initializing the test database. Each test should call the
- * initialize() method before making any database calls. This ensures that each
- * test is independent of the others.
+ * Utility class for initializing the test database. Calling the initialize()
+ * method before making any database calls ensures that each test is independent
+ * of the others.
  *
- * Initializing the database can be automated by adding a @BeforeEach annotation
- * to a setup method in JUnit.
+ * The tests of this project get their own copy of the database from
+ * {@link TestDatabase}, which builds its template with these statements.
  */
 public class TestUtils {
 
@@ -75,12 +76,20 @@ public class TestUtils {
      * @throws SQLException
      */
     public static void initialize(String databaseUrl) throws SQLException {
-        Connection connection = DriverManager.getConnection(databaseUrl);
+        try (Connection connection = DriverManager.getConnection(databaseUrl)) {
+            initialize(connection);
+        }
+    }
 
+    /**
+     * Creates the schema and the test data through an open connection, which
+     * is left open. Used by {@link TestDatabase} to build its template.
+     */
+    static void initialize(Connection connection) {
         Stream.of(dropArtist, dropAlbum, createArtist, createAlbum, insertArtists, insertAlbums).forEach(
                 sql -> {
-                    try {
-                        connection.prepareStatement(sql).executeUpdate();
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.executeUpdate();
                     } catch (SQLException e) {
                         // No way to recover from this exception. Throw a RuntimeException to make the
                         // test fail.